@@ -1,11 +1,46 @@
 package p2pblockchain.config;
 
 public class BlockchainConfig {
-    public static final int INITIAL_DIFFICULTY = 1;
+    // Proof-of-work targets in compact form (see DifficultyUtils).
+    // 0x200fffff allows hashes with 4 leading zero bits (one leading hex '0').
+    public static final int POW_LIMIT_BITS = 0x200fffff;
+    public static final int INITIAL_TARGET_BITS = POW_LIMIT_BITS;
+    public static final int MAX_RETARGET_FACTOR = 4;
     public static final int DIFFICULTY_ADJUSTMENT_INTERVAL = 10; // In Blocks
     public static final long TARGET_BLOCK_TIME_SECONDS = 30; // In Seconds
     public static final double MINING_REWARDS = 10;
     public static final int MAX_TRANSACTIONS_PER_BLOCK = 32;
+    // Largest block payload accepted from a peer (Base64 or binary), in bytes
+    public static final int MAX_BLOCK_BYTES = 1 << 20;
+    // Block timestamps must be later than the median of the previous
+    // MEDIAN_TIME_SPAN blocks (tolerates clock skew between miners) and at
+    // most MAX_FUTURE_BLOCK_TIME_MS ahead of the local clock
+    public static final int MEDIAN_TIME_SPAN = 11; // In Blocks
+    public static final long MAX_FUTURE_BLOCK_TIME_MS = 2 * 60 * 1000;
+
+    // Number of proof-of-work worker threads (defaults to one per core)
+    public static int MINING_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Number of threads verifying the transaction signatures of a block or
+    // cloned chain (defaults to one per core)
+    public static int VERIFY_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Restart the running mining job once this many transactions arrived
+    // since it started (if the block being mined is not full)
+    public static final int MINING_RESTART_PENDING_THRESHOLD = 4;
+
+    // External miners (getWork/submitWork): how many times easier than the
+    // block target a share is (capped at POW_LIMIT_BITS). Shares only feed
+    // the per-miner accounting (share rate, hash rate estimate), so this is
+    // a knob for how often miners report, not a consensus rule. Also the
+    // number of work units kept per chain tip, and how often an external
+    // miner polls for a new chain tip
+    public static final int WORK_SHARE_TARGET_FACTOR = 16;
+    public static final int MAX_OUTSTANDING_WORK = 64;
+    public static final long WORK_POLL_INTERVAL_MS = 2000;
+    // Number of external miners whose submission counters are kept (least
+    // recently active dropped first)
+    public static final int MAX_TRACKED_MINERS = 256;
 
     // 0 = None
     // 1 = Errors only
@@ -21,4 +56,20 @@ public class BlockchainConfig {
     public static int getVerboseLevel() {
         return VERBOSE_LEVEL;
     }
+
+    public static void setMiningThreads(int threads) {
+        MINING_THREADS = Math.max(1, threads);
+    }
+
+    public static int getMiningThreads() {
+        return MINING_THREADS;
+    }
+
+    public static void setVerifyThreads(int threads) {
+        VERIFY_THREADS = Math.max(1, threads);
+    }
+
+    public static int getVerifyThreads() {
+        return VERIFY_THREADS;
+    }
 }
\ No newline at end of file
@@ -21,6 +21,26 @@ public class NetworkConfig {
     public static final boolean SCAN_LOCAL_NETWORK = false; 
     public static final int NETWORK_SCAN_TIMEOUT_MS = 100; 
 
+    // Wire format: peers that accept setCodec exchange blocks, transactions
+    // and nodes in the compact binary codec; others keep Base64(JSON)
+    public static final boolean PREFER_BINARY_CODEC = true;
+    // 2: blocks carry their Merkle root ahead of the transactions
+    // 3: block hashes are fixed-width 32 bytes, without tag or length
+    public static final int BINARY_CODEC_VERSION = 3;
+
+    // Chain exchange: peers that accept useCompressedExchange send the chain
+    // Deflate-compressed (level 1-9, trading CPU for bandwidth)
+    public static final boolean PREFER_COMPRESSED_EXCHANGE = true;
+    public static final int EXCHANGE_COMPRESSION_LEVEL = 6;
+    // Largest chain exchange accepted, in bytes of JSON after decompression
+    // (a few MB of deflated data could otherwise inflate to gigabytes)
+    public static final long MAX_EXCHANGE_BYTES = 256L << 20;
+
+    // Light nodes: headers sent per getHeaders request and how often a
+    // light node polls its peer for new headers
+    public static final int MAX_HEADERS_PER_REQUEST = 2000;
+    public static final long LIGHT_SYNC_INTERVAL_MS = 10000;
+
     /**
      * Change the network socket port at runtime.
      * @param port new port to use for the network server
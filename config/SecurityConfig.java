@@ -8,4 +8,14 @@ public class SecurityConfig {
     public static final String PUBLIC_KEY_ALGORITHM = "EC";
     public static final int PUBLIC_KEY_LENGTH = 256;
     public static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+
+    // Number of decoded sender public keys kept (least recently used evicted)
+    public static final int PUBLIC_KEY_CACHE_SIZE = 4096;
+
+    // Number of transaction ids whose signature is known to be valid
+    public static final int VERIFIED_SIGNATURE_CACHE_SIZE = 65536;
+
+    // Version of the canonical encoding (see CanonicalWriter) that transaction
+    // ids and signatures are computed over; written after the record tag
+    public static final int CANONICAL_ENCODING_VERSION = 1;
 }
@@ -0,0 +1,347 @@
+package p2pblockchain.main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import p2pblockchain.types.Block;
+import p2pblockchain.types.BlockHeader;
+import p2pblockchain.types.BlockValidator;
+import p2pblockchain.types.Blockchain;
+import p2pblockchain.types.ChainVerifier;
+import p2pblockchain.types.MerkleTree;
+import p2pblockchain.types.Miner;
+import p2pblockchain.types.SignatureVerifier;
+import p2pblockchain.types.Transaction;
+import p2pblockchain.types.WorkManager;
+import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.Converter;
+import p2pblockchain.utils.DifficultyUtils;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.SecurityUtils;
+
+/**
+ * Micro-benchmarks for serialization and validation hot paths.
+ *
+ * Builds a block of signed transactions with throwaway in-memory keys (no
+ * wallet files are written), checks that every codec round-trips it exactly
+ * and prints wire sizes and encode/decode times.
+ *
+ * Usage: java p2pblockchain.main.runBenchmarks [transactions] [iterations] [chain blocks]
+ */
+public class runBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        int transactionCount = args.length > 0 ? Integer.parseInt(args[0]) : p2pblockchain.config.BlockchainConfig.MAX_TRANSACTIONS_PER_BLOCK;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int chainLength = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Block block = sampleBlock(transactionCount);
+        System.out.println("Block with " + transactionCount + " transactions, " + iterations + " iterations");
+        benchmarkCodecs(block, iterations);
+        benchmarkAssembly(block, iterations);
+        benchmarkExternalShares(block, Math.max(1, iterations / 100));
+
+        System.out.println();
+        System.out.println("Signatures of " + transactionCount + " transactions");
+        benchmarkSignatures(block, Math.max(1, iterations / 100));
+
+        ArrayList<Block> chain = new ArrayList<Block>();
+        for (int i = 0; i < chainLength; i++) {
+            chain.add(sampleBlock(transactionCount));
+        }
+        System.out.println();
+        System.out.println("Chain exchange of " + chainLength + " blocks");
+        benchmarkExchange(chain, Math.max(1, iterations / chainLength));
+
+        System.out.println();
+        System.out.println("Verification of a cloned chain of " + chainLength + " blocks");
+        benchmarkChainVerification(sampleChain(chainLength, transactionCount));
+    }
+
+    /**
+     * Compare the Base64(JSON) and binary wire codecs: size, round-trip
+     * correctness and encode/decode time. The "json-tree" row is the generic
+     * JsonObject path that the specialized JSON codec replaced.
+     */
+    private static void benchmarkCodecs(Block block, int iterations) throws Exception {
+        String json = block.toBase64();
+        String binary = Base64Utils.encode(block.toBytes());
+
+        Block fromJson = new Block(json);
+        Block fromBinary = new Block();
+        boolean binaryDecoded = fromBinary.fromBytes(Base64Utils.decode(binary));
+        check("JSON round-trip", fromJson.toBase64().equals(json));
+        check("binary round-trip", binaryDecoded && fromBinary.toBase64().equals(json));
+        check("binary hash", fromBinary.getMerkleRoot().equals(block.getMerkleRoot()) && fromBinary.contentToHash().equals(block.getHash()));
+
+        Transaction transaction = block.getTransactions().getFirst();
+        check("transaction round-trip", Transaction.fromBytes(transaction.toBytes()).equals(transaction));
+        check("specialized JSON", Base64Utils.encodeToString(block.toJson().toString()).equals(json));
+
+        System.out.println(String.format("%-10s %10s %12s %12s", "codec", "wire bytes", "encode us", "decode us"));
+        System.out.println(String.format("%-10s %10d %12.1f %12.1f", "json-tree", json.length(),
+            time(iterations, () -> Base64Utils.encodeToString(block.toJson().toString())),
+            time(iterations, () -> new Block().fromJson(new JsonObject(Base64Utils.decodeToString(json))))));
+        System.out.println(String.format("%-10s %10d %12.1f %12.1f", "json", json.length(),
+            time(iterations, () -> block.toBase64()),
+            time(iterations, () -> new Block(json))));
+        System.out.println(String.format("%-10s %10d %12.1f %12.1f", "binary", binary.length(),
+            time(iterations, () -> Base64Utils.encode(block.toBytes())),
+            time(iterations, () -> new Block().fromBytes(Base64Utils.decode(binary)))));
+        System.out.println(String.format("binary/json size ratio: %.2f", (double) binary.length() / json.length()));
+    }
+
+    /**
+     * Time filling a block one transaction at a time, as the miner does,
+     * and a full Merkle tree build over the same transactions.
+     */
+    private static void benchmarkAssembly(Block block, int iterations) throws Exception {
+        ArrayList<Transaction> transactions = block.getTransactions();
+        Block assembled = new Block();
+        for (Transaction transaction : transactions) {
+            assembled.addTransaction(transaction);
+        }
+        check("incremental Merkle root", assembled.getMerkleRoot().equals(block.getMerkleRoot()));
+
+        System.out.println(String.format("assemble %d transactions: %.1f us, full Merkle build: %.1f us", transactions.size(),
+            time(iterations, () -> {
+                Block b = new Block();
+                for (Transaction transaction : transactions) {
+                    b.addTransaction(transaction);
+                }
+                b.getMerkleRoot();
+            }),
+            time(iterations, () -> new MerkleTree(transactions).getMerkleRoot())));
+    }
+
+    /**
+     * Mine shares the way startMiner does (work header as sent, searched
+     * against the share target) for a block target harder than the
+     * proof-of-work limit, and check that the node accepts every distinct
+     * solution as it would in submitWork.
+     */
+    private static void benchmarkExternalShares(Block block, int shares) {
+        Block template = new Block(block);
+        template.setTargetBits(0x1f0fffff);
+        WorkManager workManager = new WorkManager();
+        JsonObject work = workManager.createWork(template, 0);
+        BlockHeader header = BlockHeader.fromBytes(Converter.hexToBytes(work.getString("header")));
+        byte[] shareTarget = DifficultyUtils.compactToTarget(work.getInt("shareTargetBits"));
+
+        Miner miner = new Miner(p2pblockchain.config.BlockchainConfig.getMiningThreads());
+        HashSet<Hash256> found = new HashSet<Hash256>();
+        int accepted = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < shares; i++) {
+            BlockHeader solution = miner.mine(header, shareTarget, () -> false);
+            if (solution != null && found.add(solution.toHash())
+                    && workManager.solve(work.getString("workId"), solution.getNonce(), solution.getTimestamp(), 0) != null) {
+                accepted++;
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / shares;
+        check("external miner shares accepted", !found.isEmpty() && accepted == found.size());
+        System.out.println(String.format("external shares (block bits %08x, share bits %08x): %d/%d accepted, %.1f us per share",
+            template.getTargetBits(), work.getInt("shareTargetBits"), accepted, found.size(), micros));
+    }
+
+    /**
+     * Compare signing and verifying a block's transactions with a new
+     * Signature (and KeyFactory) per operation, with the per-thread
+     * instances of SecurityUtils one at a time, and with its batch methods.
+     */
+    private static void benchmarkSignatures(Block block, int iterations) throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_ALGORITHM);
+        keyGen.initialize(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_LENGTH);
+        KeyPair keys = keyGen.generateKeyPair();
+        String address = Converter.bytesToBase64(keys.getPublic().getEncoded());
+
+        int count = block.getTransactions().size();
+        byte[][] contents = new byte[count][];
+        String[] addresses = new String[count];
+        for (int i = 0; i < count; i++) {
+            contents[i] = block.getTransactions().get(i).contentToCanonicalBytes();
+            addresses[i] = address;
+        }
+        String[] signatures = SecurityUtils.signAll(keys.getPrivate(), contents);
+        boolean[] batchValid = SecurityUtils.areSignaturesValid(addresses, contents, signatures);
+        for (int i = 0; i < count; i++) {
+            check("batch signature " + i, batchValid[i] && SecurityUtils.isSignatureValid(address, contents[i], SecurityUtils.sign(keys.getPrivate(), contents[i])));
+        }
+
+        System.out.println(String.format("%-8s %14s %14s %14s", "us/op", "per-call", "per-thread", "batch"));
+        System.out.println(String.format("%-8s %14.1f %14.1f %14.1f", "sign",
+            time(iterations, () -> {
+                for (byte[] content : contents) {
+                    Signature signer = Signature.getInstance(p2pblockchain.config.SecurityConfig.SIGNATURE_ALGORITHM);
+                    signer.initSign(keys.getPrivate());
+                    signer.update(content);
+                    Converter.bytesToBase64(signer.sign());
+                }
+            }) / count,
+            time(iterations, () -> {
+                for (byte[] content : contents) {
+                    SecurityUtils.sign(keys.getPrivate(), content);
+                }
+            }) / count,
+            time(iterations, () -> SecurityUtils.signAll(keys.getPrivate(), contents)) / count));
+        System.out.println(String.format("%-8s %14.1f %14.1f %14.1f", "verify",
+            time(iterations, () -> {
+                for (int i = 0; i < count; i++) {
+                    PublicKey publicKey = KeyFactory.getInstance(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_ALGORITHM)
+                        .generatePublic(new X509EncodedKeySpec(Base64Utils.decode(addresses[i])));
+                    Signature verifier = Signature.getInstance(p2pblockchain.config.SecurityConfig.SIGNATURE_ALGORITHM);
+                    verifier.initVerify(publicKey);
+                    verifier.update(contents[i]);
+                    verifier.verify(Base64Utils.decode(signatures[i]));
+                }
+            }) / count,
+            time(iterations, () -> {
+                for (int i = 0; i < count; i++) {
+                    SecurityUtils.isSignatureValid(addresses[i], contents[i], signatures[i]);
+                }
+            }) / count,
+            time(iterations, () -> SecurityUtils.areSignaturesValid(addresses, contents, signatures)) / count));
+    }
+
+    /**
+     * Compare the uncompressed and compressed chain exchange (CLONE_CHAIN
+     * payload): wire size, compression ratio (JSON bytes per wire byte) and
+     * encode/decode time and throughput.
+     */
+    private static void benchmarkExchange(ArrayList<Block> chain, int iterations) throws Exception {
+        // Keep the per-exchange statistics lines out of the timings
+        int verboseLevel = p2pblockchain.config.BlockchainConfig.VERBOSE_LEVEL;
+        p2pblockchain.config.BlockchainConfig.VERBOSE_LEVEL = 2;
+        try {
+            byte[] plain = exchange(chain, false);
+            long jsonBytes = Base64Utils.decode(new String(plain, java.nio.charset.StandardCharsets.US_ASCII)).length;
+            System.out.println(String.format("%-12s %10s %7s %11s %11s %12s", "exchange", "wire bytes", "ratio", "encode ms", "decode ms", "decode MB/s"));
+            for (boolean compressed : new boolean[] {false, true}) {
+                byte[] payload = exchange(chain, compressed);
+                ArrayList<Block> decoded = Blockchain.readExchangeBlocks(new ByteArrayInputStream(payload), compressed);
+                check("exchange round-trip", decoded.size() == chain.size()
+                    && decoded.getLast().toBase64().equals(chain.getLast().toBase64()));
+                double encodeUs = time(iterations, () -> exchange(chain, compressed));
+                double decodeUs = time(iterations, () -> Blockchain.readExchangeBlocks(new ByteArrayInputStream(payload), compressed));
+                System.out.println(String.format("%-12s %10d %7.2f %11.2f %11.2f %12.1f", compressed ? "deflate" : "plain",
+                    payload.length, (double) jsonBytes / payload.length, encodeUs / 1000, decodeUs / 1000, jsonBytes / decodeUs));
+            }
+        } finally {
+            p2pblockchain.config.BlockchainConfig.VERBOSE_LEVEL = verboseLevel;
+        }
+    }
+
+    /**
+     * Verify a linked, mined chain with the ChainVerifier, with cold and warm
+     * signature caches, and print blocks/s and tx/s for each verifier
+     * thread count.
+     */
+    private static void benchmarkChainVerification(ArrayList<Block> chain) throws Exception {
+        int verboseLevel = p2pblockchain.config.BlockchainConfig.VERBOSE_LEVEL;
+        p2pblockchain.config.BlockchainConfig.VERBOSE_LEVEL = 2;
+        try {
+            System.out.println(String.format("%-8s %-6s %10s %12s %12s", "threads", "cache", "ms", "blocks/s", "tx/s"));
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int threads : cores == 1 ? new int[] {1} : new int[] {1, cores}) {
+                SignatureVerifier signatureVerifier = new SignatureVerifier(threads);
+                ChainVerifier verifier = new ChainVerifier(new BlockValidator(signatureVerifier), signatureVerifier);
+                for (String cache : new String[] {"cold", "warm"}) {
+                    ChainVerifier.Report report = verifier.verify(chain);
+                    check("chain verification (" + report.getRejection() + ")", report.isValid());
+                    System.out.println(String.format("%-8d %-6s %10.1f %12.0f %12.0f", threads, cache,
+                        report.getElapsedNanos() / 1e6, report.getBlocksPerSecond(), report.getTransactionsPerSecond()));
+                }
+            }
+        } finally {
+            p2pblockchain.config.BlockchainConfig.VERBOSE_LEVEL = verboseLevel;
+        }
+    }
+
+    private static byte[] exchange(ArrayList<Block> chain, boolean compressed) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Blockchain.writeExchange(chain, out, compressed);
+        return out.toByteArray();
+    }
+
+    /**
+     * Build a mined-looking block of signed transactions.
+     */
+    static Block sampleBlock(int transactionCount) throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_ALGORITHM);
+        keyGen.initialize(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_LENGTH);
+        KeyPair sender = keyGen.generateKeyPair();
+        String senderAddress = Converter.bytesToBase64(sender.getPublic().getEncoded());
+        String receiverAddress = Converter.bytesToBase64(keyGen.generateKeyPair().getPublic().getEncoded());
+        Signature signer = Signature.getInstance(p2pblockchain.config.SecurityConfig.SIGNATURE_ALGORITHM);
+
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+        for (int i = 0; i < transactionCount; i++) {
+            Transaction transaction = new Transaction(senderAddress, receiverAddress, 1 + i, 0.1, 0L, "benchmark " + i, "");
+            signer.initSign(sender.getPrivate());
+            signer.update(transaction.contentToCanonicalBytes());
+            transactions.add(transaction.withSignature(Converter.bytesToBase64(signer.sign())));
+        }
+
+        Block block = new Block(Hash256.ZERO, Hash256.ZERO, p2pblockchain.config.BlockchainConfig.INITIAL_TARGET_BITS, 0, 0L, transactions,
+            senderAddress, p2pblockchain.config.BlockchainConfig.MINING_REWARDS);
+        block.setPreviousHash(block.getHeader().toHash());
+        block.setHash(block.contentToHash());
+        return block;
+    }
+
+    /**
+     * Build a chain of sample blocks, linked and mined at the target expected
+     * at each height, so that it passes full chain verification.
+     */
+    static ArrayList<Block> sampleChain(int length, int transactionCount) throws Exception {
+        ArrayList<Block> chain = new ArrayList<Block>();
+        long timestamp = 0L;
+        for (int height = 0; height < length; height++) {
+            Block block = sampleBlock(transactionCount);
+            block.setPreviousHash(height == 0 ? Hash256.ZERO : chain.getLast().getHash());
+            block.setTimestamp(timestamp);
+            block.setTargetBits(Blockchain.nextTargetBits(chain, height));
+            while (!block.getHeader().meetsTarget()) {
+                block.setNonce(block.getNonce() + 1);
+            }
+            block.setHash(block.getHeader().toHash());
+            chain.add(block);
+            timestamp += p2pblockchain.config.BlockchainConfig.TARGET_BLOCK_TIME_SECONDS * 1000L;
+        }
+        return chain;
+    }
+
+    /**
+     * Average time of one call, in microseconds, after a warm-up pass.
+     */
+    static double time(int iterations, ThrowingRunnable task) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+
+    static void check(String name, boolean passed) {
+        if (!passed) {
+            throw new IllegalStateException("Benchmark self-check failed: " + name);
+        }
+    }
+
+    interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -18,11 +18,14 @@ import java.util.List;
 
 import p2pblockchain.types.Block;
 import p2pblockchain.types.Blockchain;
+import p2pblockchain.types.MerkleProof;
 import p2pblockchain.types.MessageType;
 import p2pblockchain.types.P2PNode;
 import p2pblockchain.types.Transaction;
 import p2pblockchain.types.Wallet;
+import p2pblockchain.types.WorkManager;
 import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.Hash256;
 import p2pblockchain.utils.Logger;
 
 public class startBlockchain {
@@ -152,8 +155,14 @@ public class startBlockchain {
         consoleThread.setDaemon(true);
         consoleThread.start();
 
-        // Miner loop (main thread)
+        // Miner loop (main thread), parked while there is nothing to mine
         while (true) {
+            try {
+                blockchain.awaitMiningWork();
+            } catch (InterruptedException e) {
+                Logger.warn("Miner loop interrupted. Exiting.");
+                return;
+            }
             blockchain.mineBlock();
             blockchain.adjustMiningDifficulty();
         }
@@ -568,7 +577,7 @@ public class startBlockchain {
 
                 switch (cmd) {
                     case "help":
-                        System.out.println("Commands:\n  help\n  balance <address>\n  mybalance\n  send <to> <amount> <fee> [message]\n  start\n  stop\n  join <host:port>\n  clone <host:port>\n  listpeers\n  listwallets\n  listblocks\n  quit");
+                        System.out.println("Commands:\n  help\n  balance <address>\n  mybalance\n  send <to> <amount> <fee> [message]\n  start\n  stop\n  join <host:port>\n  clone <host:port>\n  listpeers\n  listwallets\n  stats\n  miners\n  listblocks\n  quit");
                         break;
 
                     case "balance":
@@ -643,6 +652,23 @@ public class startBlockchain {
                         }
                         break;
 
+                    case "stats":
+                        System.out.println(blockchain.getMiningStats().toString());
+                        System.out.println("Public key cache: " + p2pblockchain.utils.SecurityUtils.getPublicKeyCacheStats().toString());
+                        System.out.println("Verified signature cache: " + blockchain.getSignatureCacheStats().toString());
+                        System.out.println("Block validation: " + blockchain.getValidationStats().toString());
+                        break;
+
+                    case "miners":
+                        {
+                            ArrayList<String> miners = blockchain.describeExternalMiners();
+                            if (miners.isEmpty()) {
+                                System.out.println("No external miners.");
+                            }
+                            for (String minerLine : miners) System.out.println(" - " + minerLine);
+                        }
+                        break;
+
                     case "listpeers":
                         for (P2PNode p : blockchain.getP2PNodes()) System.out.println(" - " + p.toString());
                         break;
@@ -689,11 +715,11 @@ public class startBlockchain {
                             double fee = Double.parseDouble(a[2]);
                             String message = a.length >=4 ? a[3] : "";
 
-                            Transaction t = new Transaction(wallet.getAccount(), to, amount, fee, 0L, message, "");
-                            String signature = wallet.sign(t.contentToBase64());
-                            t.setSignature(signature);
+                            Transaction unsigned = new Transaction(wallet.getAccount(), to, amount, fee, 0L, message, "");
+                            Transaction t = unsigned.withSignature(wallet.sign(unsigned.contentToCanonicalBytes()));
                             boolean ok = blockchain.receiveTransaction(t);
-                            System.out.println(ok ? "Transaction accepted" : "Transaction rejected");
+                            // The id lets the receiver check the payment from a light node
+                            System.out.println(ok ? "Transaction accepted: " + t.toHash() : "Transaction rejected");
                         }
                         break;
 
@@ -741,6 +767,76 @@ public class startBlockchain {
         }
     }
 
+    /**
+     * Decode a transaction payload in the codec of the connection.
+     *
+     * @param payload     Base64 payload of the message
+     * @param binaryCodec true if the connection switched to the binary codec
+     * @return decoded transaction, or null if the payload is malformed
+     */
+    private static Transaction decodeTransaction(String payload, boolean binaryCodec) {
+        try {
+            if (!binaryCodec) {
+                return Transaction.fromBase64(payload);
+            }
+            return Transaction.fromBytes(Base64Utils.decode(payload));
+        } catch (IllegalArgumentException e) {
+            Logger.warn("Malformed transaction payload: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decode a work submission and hand it to the blockchain.
+     *
+     * @param blockchain local blockchain
+     * @param payload    decoded JSON {minerId, workId, nonce, timestamp}
+     * @return outcome of the submission, INVALID if the payload is malformed
+     */
+    private static WorkManager.Result submitWork(Blockchain blockchain, String payload) {
+        String minerId;
+        String workId;
+        int nonce;
+        long timestamp;
+        try {
+            p2pblockchain.utils.JsonObject submission = new p2pblockchain.utils.JsonObject(payload);
+            minerId = submission.getString("minerId");
+            workId = submission.getString("workId");
+            nonce = submission.getInt("nonce");
+            timestamp = submission.getLong("timestamp");
+        } catch (Exception e) {
+            Logger.warn("Malformed work submission: " + e.getMessage());
+            return WorkManager.Result.INVALID;
+        }
+        if (minerId == null || workId == null) {
+            Logger.warn("Malformed work submission: missing minerId or workId");
+            return WorkManager.Result.INVALID;
+        }
+        return blockchain.submitWork(minerId, workId, nonce, timestamp);
+    }
+
+    /**
+     * Decode a node payload in the codec of the connection.
+     *
+     * @param payload     Base64 payload of the message
+     * @param binaryCodec true if the connection switched to the binary codec
+     * @return decoded node, or null if the payload is malformed
+     */
+    private static P2PNode decodeNode(String payload, boolean binaryCodec) {
+        P2PNode node = new P2PNode();
+        boolean decoded;
+        try {
+            decoded = binaryCodec ? node.fromBytes(Base64Utils.decode(payload)) : node.fromBase64(payload);
+        } catch (IllegalArgumentException e) {
+            decoded = false;
+        }
+        if (!decoded) {
+            Logger.warn("Malformed node payload. Discarding.");
+            return null;
+        }
+        return node;
+    }
+
     /**
      * Handles an individual client connection for P2P requests.
      * 
@@ -752,6 +848,10 @@ public class startBlockchain {
             BufferedReader socketInput = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
             BufferedWriter socketOutput = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
             Logger.log(clientSocket.getInetAddress().getHostAddress() + " Connected.");
+            // Payload codec of this connection: Base64(JSON) unless the peer asks for binary
+            boolean binaryCodec = false;
+            // Chain exchange of this connection: uncompressed unless the peer asks for it
+            boolean compressedExchange = false;
             
             String receivedMessage;
             while ((receivedMessage = socketInput.readLine()) != null) {
@@ -776,8 +876,8 @@ public class startBlockchain {
                         // receive: doTransact, b64(transaction.toBase64)
                         // returns: b64(Ok), b64(Error)
                         // messageElements[1] is the Base64(transaction.toBase64())
-                        Transaction receivedTransaction = new Transaction(messageElements[1]);
-                        if (blockchain.receiveTransaction(receivedTransaction)) {
+                        Transaction receivedTransaction = decodeTransaction(messageElements[1], binaryCodec);
+                        if (receivedTransaction != null && blockchain.receiveTransaction(receivedTransaction)) {
                             socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         } else {
                             socketOutput.write(Base64Utils.encodeToString("Error") + "\n");
@@ -786,8 +886,8 @@ public class startBlockchain {
                     
                     } else if (request.contentEquals(MessageType.GET_CLONE_CHAIN_FROM)) {
                         // receive: getCloneChainFrom, b64(networkNode.toBase64)
-                        P2PNode nodeToClone = new P2PNode(messageElements[1]);
-                        if (blockchain.getBlockchainFrom(nodeToClone)) {
+                        P2PNode nodeToClone = decodeNode(messageElements[1], binaryCodec);
+                        if (nodeToClone != null && blockchain.getBlockchainFrom(nodeToClone)) {
                             socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         } else {
                             socketOutput.write(Base64Utils.encodeToString("Error") + "\n");
@@ -796,8 +896,10 @@ public class startBlockchain {
                     
                     } else if (request.contentEquals(MessageType.JOIN_NETWORK)) {
                         // receive: joinNetwork, b64(networkNode.toBase64)
-                        P2PNode joiningNode = new P2PNode(messageElements[1]);
-                        if (blockchain.receiveP2PNode(joiningNode)) {
+                        P2PNode joiningNode = decodeNode(messageElements[1], binaryCodec);
+                        if (joiningNode == null) {
+                            socketOutput.write(Base64Utils.encodeToString("Error") + "\n");
+                        } else if (blockchain.receiveP2PNode(joiningNode)) {
                             socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         } else {
                             socketOutput.write(Base64Utils.encodeToString("Dup") + "\n");
@@ -805,17 +907,80 @@ public class startBlockchain {
                         socketOutput.flush();
                     
                     } else if (request.contentEquals(MessageType.LEAVE_NETWORK)) {
-                        P2PNode leavingNode = new P2PNode(messageElements[1]);
-                        blockchain.removeP2PNode(leavingNode);
-                        socketOutput.write(Base64Utils.encodeToString("Bye") + "\n");
+                        P2PNode leavingNode = decodeNode(messageElements[1], binaryCodec);
+                        if (leavingNode == null) {
+                            socketOutput.write(Base64Utils.encodeToString("Error") + "\n");
+                            socketOutput.flush();
+                        } else {
+                            blockchain.removeP2PNode(leavingNode);
+                            socketOutput.write(Base64Utils.encodeToString("Bye") + "\n");
+                            socketOutput.flush();
+                            Logger.info("Node " + leavingNode.toString() + " has left the network.");
+                        }
+
+                    } else if (request.contentEquals(MessageType.GET_WORK)) {
+                        // receive: getWork, b64(minerId)
+                        // returns: b64(work JSON), b64(NoWork)
+                        p2pblockchain.utils.JsonObject work = blockchain.getWork(requestContent);
+                        if (work != null) {
+                            socketOutput.write(Base64Utils.encodeToString(work.toString()) + "\n");
+                        } else {
+                            socketOutput.write(Base64Utils.encodeToString("NoWork") + "\n");
+                        }
+                        socketOutput.flush();
+
+                    } else if (request.contentEquals(MessageType.SUBMIT_WORK)) {
+                        // receive: submitWork, b64(JSON {minerId, workId, nonce, timestamp})
+                        // returns: b64(BLOCK), b64(SHARE), b64(STALE), b64(INVALID)
+                        WorkManager.Result result = submitWork(blockchain, requestContent);
+                        socketOutput.write(Base64Utils.encodeToString(result.name()) + "\n");
+                        socketOutput.flush();
+
+                    } else if (request.contentEquals(MessageType.GET_HEADERS)) {
+                        // receive: getHeaders, b64(start height)
+                        // returns: b64(binary headers), b64(Error)
+                        int fromHeight;
+                        try {
+                            fromHeight = Integer.parseInt(requestContent.trim());
+                        } catch (NumberFormatException e) {
+                            fromHeight = -1;
+                        }
+                        if (fromHeight < 0) {
+                            Logger.warn("Malformed header request: " + requestContent);
+                            socketOutput.write(Base64Utils.encodeToString("Error") + "\n");
+                        } else {
+                            byte[] headers = blockchain.getHeaders(fromHeight, p2pblockchain.config.NetworkConfig.MAX_HEADERS_PER_REQUEST);
+                            socketOutput.write(Base64Utils.encode(headers) + "\n");
+                        }
+                        socketOutput.flush();
+
+                    } else if (request.contentEquals(MessageType.GET_MERKLE_PROOF)) {
+                        // receive: getMerkleProof, b64(transaction id)
+                        // returns: b64(proof JSON), b64(NotFound), b64(Error)
+                        Hash256 transactionId;
+                        try {
+                            transactionId = Hash256.fromHex(requestContent.trim());
+                        } catch (IllegalArgumentException e) {
+                            transactionId = null;
+                        }
+                        MerkleProof proof = transactionId == null ? null : blockchain.getMerkleProof(transactionId);
+                        if (transactionId == null) {
+                            Logger.warn("Malformed Merkle proof request: " + requestContent);
+                            socketOutput.write(Base64Utils.encodeToString("Error") + "\n");
+                        } else if (proof != null) {
+                            socketOutput.write(proof.toBase64() + "\n");
+                        } else {
+                            socketOutput.write(Base64Utils.encodeToString("NotFound") + "\n");
+                        }
                         socketOutput.flush();
-                        Logger.info("Node " + leavingNode.toString() + " has left the network.");
 
                     } else if (request.contentEquals(MessageType.BCAST_BLOCK)) {
                         // receive: broadcastedBlock, b64(block.toBase64)
                         // returns: b64(Ok), b64(Duplicate)
-                        Block receivedBlock = new Block(messageElements[1]);
-                        if (blockchain.receiveBlock(receivedBlock)) {
+                        boolean accepted = binaryCodec
+                            ? blockchain.receiveBlock(Base64Utils.decode(messageElements[1]))
+                            : blockchain.receiveBlock(messageElements[1]);
+                        if (accepted) {
                             socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         } else {
                             socketOutput.write(Base64Utils.encodeToString("Duplicate or Tampered") + "\n");
@@ -824,8 +989,8 @@ public class startBlockchain {
 
                     } else if (request.contentEquals(MessageType.BCAST_TRANSACT)) {
                         // receive: broadcastedTransaction, b64(transaction.toBase64)
-                        Transaction receivedTransaction = new Transaction(messageElements[1]);
-                        if (blockchain.receiveTransaction(receivedTransaction)) {
+                        Transaction receivedTransaction = decodeTransaction(messageElements[1], binaryCodec);
+                        if (receivedTransaction != null && blockchain.receiveTransaction(receivedTransaction)) {
                             socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         } else {
                             socketOutput.write(Base64Utils.encodeToString("Duplicate or Invalid") + "\n");
@@ -834,11 +999,13 @@ public class startBlockchain {
 
                     } else if (request.contentEquals(MessageType.BCAST_NEWNODE)) {
                         // receive: broadcastedNewNode, b64(networkNode.toBase64)
-                        P2PNode receivedNode = new P2PNode(messageElements[1]);
+                        P2PNode receivedNode = decodeNode(messageElements[1], binaryCodec);
 
                         // Don't add yourself - check with port
 
-                        if (blockchain.receiveP2PNode(receivedNode)) {
+                        if (receivedNode == null) {
+                            socketOutput.write(Base64Utils.encodeToString("Error") + "\n");
+                        } else if (blockchain.receiveP2PNode(receivedNode)) {
                             socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         } else {
                             socketOutput.write(Base64Utils.encodeToString("Duplicate") + "\n");
@@ -849,7 +1016,15 @@ public class startBlockchain {
                 
                 // No recognized command
                 } else {
-                    if (receivedMessage.contentEquals(MessageType.MINE_START)) {
+                    if (receivedMessage.contentEquals(MessageType.USE_BINARY_CODEC)) {
+                        binaryCodec = true;
+                        socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
+                        socketOutput.flush();
+                    } else if (receivedMessage.contentEquals(MessageType.USE_COMPRESSED_EXCHANGE)) {
+                        compressedExchange = true;
+                        socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
+                        socketOutput.flush();
+                    } else if (receivedMessage.contentEquals(MessageType.MINE_START)) {
                         blockchain.startMining();
                         socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         socketOutput.flush();
@@ -857,8 +1032,16 @@ public class startBlockchain {
                         blockchain.stopMining();
                         socketOutput.write(Base64Utils.encodeToString("Ok") + "\n");
                         socketOutput.flush();
+                    } else if (receivedMessage.contentEquals(MessageType.GET_TIP)) {
+                        socketOutput.write(Base64Utils.encodeToString(blockchain.getTipHash().toHex()) + "\n");
+                        socketOutput.flush();
+                    } else if (receivedMessage.contentEquals(MessageType.GET_MINING_STATS)) {
+                        socketOutput.write(Base64Utils.encodeToString(blockchain.getMiningStats().toString()) + "\n");
+                        socketOutput.flush();
                     } else if (receivedMessage.contentEquals(MessageType.CLONE_CHAIN)) {
-                        socketOutput.write(blockchain.toBase64ForExchange() + "\n");
+                        // Stream the chain block by block straight to the socket
+                        blockchain.writeExchange(clientSocket.getOutputStream(), compressedExchange);
+                        socketOutput.write("\n");
                         socketOutput.flush();
                     } else if (receivedMessage.contentEquals(MessageType.GET_LOCAL_WALLETS)) {
                         // Get local wallets and return as JSON array
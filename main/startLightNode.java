@@ -0,0 +1,127 @@
+package p2pblockchain.main;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+
+import p2pblockchain.types.LightClient;
+import p2pblockchain.types.MerkleProof;
+import p2pblockchain.types.P2PNode;
+import p2pblockchain.types.Transaction;
+import p2pblockchain.types.Wallet;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.Logger;
+
+/**
+ * Light node: keeps only the block headers of a full node's chain and
+ * checks payments with Merkle proofs instead of cloning the chain.
+ *
+ * Headers are synced at startup and then every
+ * {@code NetworkConfig.LIGHT_SYNC_INTERVAL_MS}. The payer gets the id of a
+ * transaction from the "send" command of a full node; "verify &lt;id&gt;"
+ * checks that it is mined and shows its confirmations.
+ *
+ * Usage: java p2pblockchain.main.startLightNode [host] [port] [wallet]
+ */
+public class startLightNode {
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : p2pblockchain.config.NetworkConfig.getSocketPort();
+        String walletName = args.length > 2 ? args[2] : "Aubin";
+
+        Wallet wallet = new Wallet(walletName);
+        LightClient client = new LightClient(new P2PNode(host, port));
+        Logger.info("Light node for wallet " + walletName + " following " + host + ":" + port);
+        client.syncHeaders();
+
+        Thread syncThread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(p2pblockchain.config.NetworkConfig.LIGHT_SYNC_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                client.syncHeaders();
+            }
+        });
+        syncThread.setDaemon(true);
+        syncThread.start();
+
+        runConsole(client, wallet);
+    }
+
+    /**
+     * Console REPL of the light node. Supports: help, sync, verify, status,
+     * quit.
+     *
+     * @param client light node state
+     * @param wallet wallet whose payments are checked
+     */
+    public static void runConsole(LightClient client, Wallet wallet) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            System.out.println("Console ready. Type 'help' for commands.");
+            String line;
+            while (true) {
+                System.out.print("light> ");
+                line = in.readLine();
+                if (line == null) break;
+                line = line.trim();
+                if (line.length() == 0) continue;
+
+                String[] parts = line.split(" ", 2);
+                String cmd = parts[0].toLowerCase();
+                String args = parts.length > 1 ? parts[1].trim() : "";
+
+                switch (cmd) {
+                    case "help":
+                        System.out.println("Commands:\n  help\n  sync\n  verify <transaction id>\n  status\n  quit");
+                        break;
+
+                    case "sync":
+                        int added = client.syncHeaders();
+                        System.out.println(added < 0 ? "Header sync failed" : "Added " + added + " headers, height " + client.getHeight());
+                        break;
+
+                    case "verify":
+                        if (args.isEmpty()) { System.out.println("Usage: verify <transaction id>"); break; }
+                        {
+                            Hash256 transactionId;
+                            try {
+                                transactionId = Hash256.fromHex(args);
+                            } catch (IllegalArgumentException e) {
+                                System.out.println("Invalid transaction id");
+                                break;
+                            }
+                            MerkleProof proof = client.verifyTransaction(transactionId);
+                            if (proof == null) {
+                                System.out.println("Transaction not proven");
+                                break;
+                            }
+                            Transaction t = proof.getTransaction();
+                            int confirmations = client.getHeight() - client.getHeight(proof.getBlockHash());
+                            System.out.println("Transaction in block " + proof.getBlockHash() + " (" + confirmations + " confirmations)");
+                            System.out.println("  " + t.getAmount() + " from " + t.getSender() + " to " + t.getReceiver());
+                            System.out.println(t.getReceiver().equals(wallet.getAccount()) ? "  Payment to my wallet" : "  Not a payment to my wallet");
+                        }
+                        break;
+
+                    case "status":
+                        System.out.println(client.toJson().toString());
+                        break;
+
+                    case "quit":
+                        System.out.println("Exiting...");
+                        System.exit(0);
+                        break;
+
+                    default:
+                        System.out.println("Unknown command. Type 'help'.");
+                }
+            }
+        } catch (Exception e) {
+            Logger.error("Console error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
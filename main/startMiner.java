@@ -0,0 +1,138 @@
+package p2pblockchain.main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicReference;
+
+import p2pblockchain.types.BlockHeader;
+import p2pblockchain.types.MessageType;
+import p2pblockchain.types.Miner;
+import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.Converter;
+import p2pblockchain.utils.DifficultyUtils;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.Logger;
+
+/**
+ * Standalone miner process working for a local node through the
+ * getWork/submitWork protocol.
+ *
+ * The miner fetches a header template from the node, searches it against the
+ * share target and submits every share found. The header is searched as
+ * sent (with the block target in it): the node rebuilds the same header from
+ * its template, so only the nonce and timestamp found here are submitted. A single watcher thread polls
+ * the node's chain tip and aborts the current search as soon as it differs
+ * from the previous hash in the header being searched.
+ *
+ * Usage: java p2pblockchain.main.startMiner [host] [port] [minerId] [threads]
+ */
+public class startMiner {
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : p2pblockchain.config.NetworkConfig.getSocketPort();
+        String minerId = args.length > 2 ? args[2] : "miner-" + ProcessHandle.current().pid();
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : p2pblockchain.config.BlockchainConfig.getMiningThreads();
+
+        Miner miner = new Miner(threads);
+        Logger.info("External miner " + minerId + " working for " + host + ":" + port + " with " + miner.getThreadCount() + " threads");
+
+        // Previous hash of the header being searched, null between searches
+        AtomicReference<Hash256> searchedTip = new AtomicReference<Hash256>();
+        Thread watcher = new Thread(() -> watchTip(host, port, searchedTip, miner), "tip-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        while (true) {
+            try {
+                JsonObject work = getWork(host, port, minerId);
+                if (work == null) {
+                    Thread.sleep(p2pblockchain.config.BlockchainConfig.WORK_POLL_INTERVAL_MS);
+                    continue;
+                }
+
+                BlockHeader template = BlockHeader.fromBytes(Converter.hexToBytes(work.getString("header")));
+                byte[] shareTarget = DifficultyUtils.compactToTarget(work.getInt("shareTargetBits"));
+                searchedTip.set(template.getPreviousHash());
+                BlockHeader solution = miner.mine(template, shareTarget, () -> false);
+                searchedTip.set(null);
+                if (solution == null) {
+                    continue;
+                }
+
+                JsonObject submission = new JsonObject();
+                submission.put("minerId", minerId);
+                submission.put("workId", work.getString("workId"));
+                submission.put("nonce", solution.getNonce());
+                submission.put("timestamp", solution.getTimestamp());
+                String result = request(host, port, MessageType.SUBMIT_WORK + ", " + Base64Utils.encodeToString(submission.toString()));
+                Logger.info("Submitted share " + solution.toHash() + " after " + miner.getLastJobAttempts() + " hashes: " + result);
+
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                Logger.error("External miner error: " + e.getMessage());
+                try { Thread.sleep(p2pblockchain.config.BlockchainConfig.WORK_POLL_INTERVAL_MS); } catch (InterruptedException ie) { return; }
+            }
+        }
+    }
+
+    /**
+     * Request a work unit from the node.
+     *
+     * @return work JSON, or null if the node has nothing to mine
+     */
+    private static JsonObject getWork(String host, int port, String minerId) throws Exception {
+        String response = request(host, port, MessageType.GET_WORK + ", " + Base64Utils.encodeToString(minerId));
+        if (response == null || !response.startsWith("{")) {
+            return null;
+        }
+        return new JsonObject(response);
+    }
+
+    /**
+     * Poll the node's chain tip for the lifetime of the miner and abort the
+     * running search whenever the tip differs from the previous hash of the
+     * header being searched.
+     */
+    private static void watchTip(String host, int port, AtomicReference<Hash256> searchedTip, Miner miner) {
+        while (true) {
+            try {
+                Thread.sleep(p2pblockchain.config.BlockchainConfig.WORK_POLL_INTERVAL_MS);
+                Hash256 previousHash = searchedTip.get();
+                if (previousHash == null) {
+                    continue;
+                }
+                Hash256 tip = Hash256.fromHex(request(host, port, MessageType.GET_TIP));
+                // Skip the abort if the search ended meanwhile
+                if (!previousHash.equals(tip) && searchedTip.get() == previousHash) {
+                    miner.abort("new chain tip");
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                if (searchedTip.get() != null) {
+                    miner.abort("node unreachable");
+                }
+            }
+        }
+    }
+
+    /**
+     * Send one request line to the node and decode its Base64 response line.
+     */
+    private static String request(String host, int port, String message) throws Exception {
+        try (Socket socket = new Socket(host, port)) {
+            BufferedWriter socketOutput = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            BufferedReader socketInput = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            socketOutput.write(message + "\n");
+            socketOutput.flush();
+            String response = socketInput.readLine();
+            return response == null ? null : Base64Utils.decodeToString(response);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package p2pblockchain.types;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.BinaryReader;
+import p2pblockchain.utils.BinaryWriter;
+import p2pblockchain.utils.Hash256;
 import p2pblockchain.utils.HashUtils;
 import p2pblockchain.utils.JsonArray;
 import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.JsonReader;
+import p2pblockchain.utils.JsonWriter;
 import p2pblockchain.utils.Logger;
 import p2pblockchain.utils.TimeUtils;
 
@@ -12,15 +18,21 @@ import p2pblockchain.utils.TimeUtils;
  * Represents a block in the blockchain.
  *
  * A Block contains a list of transactions, the hash of the previous block,
- * metadata for mining (difficulty, nonce), a timestamp, and miner reward info.
+ * metadata for mining (target, nonce), a timestamp, and miner reward info.
  * The class provides JSON and Base64 serialization helpers as well as methods
  * to compute content hashes used for consensus and verification.
+ *
+ * The consensus hash of a block is the hash of its {@link BlockHeader}, which
+ * commits to the transactions through the Merkle root. Hashes are held as
+ * {@link Hash256} values and only converted to hex in JSON and display forms;
+ * the genesis block has {@link Hash256#ZERO} as previous hash.
  */
 public class Block {
-    private String previousHash;
-    private String hash;
+    private int version;
+    private Hash256 previousHash;
+    private Hash256 hash;
 
-    private int miningDifficulty;
+    private int targetBits;
     private int nonce;
     private long timestamp;
 
@@ -34,9 +46,10 @@ public class Block {
      * Create an empty/default block.
      */
     public Block() {
-        this.previousHash = "";
-        this.hash = "";
-        this.miningDifficulty = 0;
+        this.version = BlockHeader.CURRENT_VERSION;
+        this.previousHash = Hash256.ZERO;
+        this.hash = Hash256.ZERO;
+        this.targetBits = 0;
         this.nonce = 0;
         this.timestamp = 0L;
         this.minerAddress = "";
@@ -49,8 +62,8 @@ public class Block {
      * Create a fully populated block instance.
      *
      * @param previousHash     The hash of the previous block
-     * @param hash             The block's own hash (may be empty until mined)
-     * @param miningDifficulty Difficulty used for mining
+     * @param hash             The block's own hash (ZERO until mined)
+     * @param targetBits       Compact proof-of-work target used for mining
      * @param nonce            Nonce used to meet difficulty
      * @param timestamp        Block timestamp (if 0, current time is used)
      * @param transactions     List of transactions included in the block
@@ -58,18 +71,19 @@ public class Block {
      * @param minerRewards     Rewards paid to the miner
      */
     public Block(
-            String previousHash,
-            String hash,
-            int miningDifficulty,
+            Hash256 previousHash,
+            Hash256 hash,
+            int targetBits,
             int nonce,
             long timestamp,
             ArrayList<Transaction> transactions,
             String minerAddress,
             double minerRewards
     ) {
+        this.version = BlockHeader.CURRENT_VERSION;
         this.previousHash = previousHash;
         this.hash = hash;
-        this.miningDifficulty = miningDifficulty;
+        this.targetBits = targetBits;
         this.nonce = nonce;
         
         if (timestamp == 0L) {
@@ -85,6 +99,26 @@ public class Block {
         this.minerRewards = minerRewards;
     }
 
+    /**
+     * Create a shallow copy of another block. The transaction list and the
+     * Merkle tree are copied but transactions themselves are shared, which
+     * is enough for mining workers that only change the nonce and timestamp.
+     *
+     * @param other block to copy
+     */
+    public Block(Block other) {
+        this.version = other.version;
+        this.previousHash = other.previousHash;
+        this.hash = other.hash;
+        this.targetBits = other.targetBits;
+        this.nonce = other.nonce;
+        this.timestamp = other.timestamp;
+        this.transactions = new ArrayList<Transaction>(other.transactions);
+        this.merkleTree = new MerkleTree(other.merkleTree);
+        this.minerAddress = other.minerAddress;
+        this.minerRewards = other.minerRewards;
+    }
+
     /**
      * Build a Block by decoding a Base64-encoded JSON representation.
      *
@@ -95,40 +129,67 @@ public class Block {
         this.fromBase64(blockInBase64);
     }
 
-    public String getPreviousHash() {return previousHash;}
-    public String getHash() {return hash;}
-    public int getMiningDifficulty() {return miningDifficulty;}
+    public int getVersion() {return version;}
+    public Hash256 getPreviousHash() {return previousHash;}
+    public Hash256 getHash() {return hash;}
+    public int getTargetBits() {return targetBits;}
     public int getNonce() {return nonce;}
     public long getTimestamp() {return timestamp;}
     public ArrayList<Transaction> getTransactions() {return transactions;}
-    public String getMerkleRoot() {return merkleTree.getMerkleRoot();}
+    public Hash256 getMerkleRoot() {return merkleTree.getMerkleRoot();}
     public String getMinerAddress() {return minerAddress;}
     public double getMinerRewards() {return minerRewards;}
 
-    public void setPreviousHash(String previousHash) {this.previousHash = previousHash;}
-    public void setHash(String hash) {this.hash = hash;}
-    public void setMiningDifficulty(int miningDifficulty) {this.miningDifficulty = miningDifficulty;}
+    public void setPreviousHash(Hash256 previousHash) {this.previousHash = previousHash;}
+    public void setHash(Hash256 hash) {this.hash = hash;}
+    public void setTargetBits(int targetBits) {this.targetBits = targetBits;}
     public void setNonce(int nonce) {this.nonce = nonce;}
     public void setTimestamp(long timestamp) {this.timestamp = timestamp;}
     public void setMinerAddress(String minerAddress) {this.minerAddress = minerAddress;}
     public void setMinerRewards(double minerRewards) {this.minerRewards = minerRewards;}
 
+    /**
+     * Build the fixed-size header of this block from its current content.
+     *
+     * @return header committing to this block's content
+     */
+    public BlockHeader getHeader() {
+        return new BlockHeader(
+            this.version,
+            this.previousHash,
+            this.getMerkleRoot(),
+            BlockHeader.coinbaseHash(this.minerAddress, this.minerRewards),
+            this.targetBits,
+            this.timestamp,
+            this.nonce
+        );
+    }
+
+    /**
+     * Build the inclusion proof of one of this block's transactions.
+     *
+     * @param transactionIndex index of the transaction in the block
+     * @return proof checkable against this block's header
+     * @throws IndexOutOfBoundsException on an invalid index
+     */
+    public MerkleProof getMerkleProof(int transactionIndex) {
+        return new MerkleProof(this.hash, transactionIndex, this.transactions.size(), this.transactions.get(transactionIndex), this.merkleTree.getProof(transactionIndex));
+    }
+
     /**
      * Add a transaction to this block if not already present (by hash).
-     * Rebuilds the internal Merkle tree after adding.
+     * The Merkle parents are re-hashed once, when the root is next needed.
      *
      * @param newTransaction Transaction to add
      * @return true when the transaction was added, false if it was a duplicate
      */
     public boolean addTransaction(Transaction newTransaction) {
-        for (Transaction transaction : this.transactions) {
-            if (transaction.toHash().contentEquals(newTransaction.toHash())) {
-                Logger.warn("Block.addTransaction: duplicate transaction detected: " + newTransaction.toString());
-                return false;
-            }
+        if (this.transactions.contains(newTransaction)) {
+            Logger.warn("Block.addTransaction: duplicate transaction detected: " + newTransaction.toString());
+            return false;
         }
         this.transactions.addLast(newTransaction);
-        this.merkleTree = new MerkleTree(this.transactions);
+        this.merkleTree.append(newTransaction);
         return true;
     }
 
@@ -144,7 +205,7 @@ public class Block {
             return false;
         }
         this.transactions.remove(transactionIndex);
-        this.merkleTree = new MerkleTree(this.transactions);
+        this.merkleTree.remove(transactionIndex);
         return true;
     }
 
@@ -155,10 +216,15 @@ public class Block {
      * @return true if removed, false if not found
      */
     public boolean removeTransaction(Transaction transactionToRemove) {
-        boolean removed = this.transactions.removeIf(transaction -> transaction.toHash().equals(transactionToRemove.toHash()));
-        if (removed) {
-            this.merkleTree = new MerkleTree(this.transactions);
-        } else {
+        boolean removed = false;
+        for (int i = this.transactions.size() - 1; i >= 0; i--) {
+            if (this.transactions.get(i).equals(transactionToRemove)) {
+                this.transactions.remove(i);
+                this.merkleTree.remove(i);
+                removed = true;
+            }
+        }
+        if (!removed) {
             Logger.warn("Block.removeTransaction: transaction not found: " + transactionToRemove.toString());
         }
         return removed;
@@ -173,9 +239,11 @@ public class Block {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Block{\n");
+        sb.append("  version=").append(version).append(",\n");
         sb.append("  previousHash='").append(previousHash).append("',\n");
         sb.append("  hash='").append(hash).append("',\n");
-        sb.append("  miningDifficulty=").append(miningDifficulty).append(",\n");
+        sb.append("  merkleRoot='").append(getMerkleRoot()).append("',\n");
+        sb.append("  targetBits=").append(targetBits).append(",\n");
         sb.append("  nonce=").append(nonce).append(",\n");
         sb.append("  timestamp=").append(timestamp).append(",\n");
         sb.append("  minerAddress='").append(minerAddress).append("',\n");
@@ -197,8 +265,10 @@ public class Block {
     public String contentToString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Block{\n");
+        sb.append("  version=").append(version).append(",\n");
         sb.append("  previousHash='").append(previousHash).append("',\n");
-        sb.append("  miningDifficulty=").append(miningDifficulty).append(",\n");
+        sb.append("  merkleRoot='").append(getMerkleRoot()).append("',\n");
+        sb.append("  targetBits=").append(targetBits).append(",\n");
         sb.append("  nonce=").append(nonce).append(",\n");
         sb.append("  timestamp=").append(timestamp).append(",\n");
         sb.append("  minerAddress='").append(minerAddress).append("',\n");
@@ -213,15 +283,21 @@ public class Block {
     }
 
     public String toBase64() {
-        return Base64Utils.encodeToString(this.toJson().toString());
+        return Base64Utils.encodeToString(JsonWriter.toString(this::writeJson));
     }
 
     public String contentToBase64() {
-        return Base64Utils.encodeToString(this.contentToJson().toString());
+        return Base64Utils.encodeToString(JsonWriter.toString(this::writeContentJson));
     }
 
     public boolean fromBase64(String blockInBase64) {
         String jsonStr = Base64Utils.decodeToString(blockInBase64);
+        try {
+            this.readJson(new JsonReader(jsonStr));
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            // Unusual shape (e.g. quoted numbers): let the generic parser decide
+        }
         try {
             return this.fromJson(new JsonObject(jsonStr));
         } catch (Exception e) {
@@ -237,9 +313,11 @@ public class Block {
      */
     public JsonObject toJson() {
         JsonObject json = new JsonObject();
-        json.put("previousHash", this.previousHash);
-        json.put("hash", this.hash);
-        json.put("miningDifficulty", this.miningDifficulty);
+        json.put("version", this.version);
+        json.put("previousHash", this.previousHash.toHex());
+        json.put("hash", this.hash.toHex());
+        json.put("merkleRoot", this.getMerkleRoot().toHex());
+        json.put("targetBits", this.targetBits);
         json.put("nonce", this.nonce);
         json.put("timestamp", this.timestamp);
         json.put("minerAddress", this.minerAddress);
@@ -260,8 +338,10 @@ public class Block {
      */
     public JsonObject contentToJson() {
         JsonObject json = new JsonObject();
-        json.put("previousHash", this.previousHash);
-        json.put("miningDifficulty", this.miningDifficulty);
+        json.put("version", this.version);
+        json.put("previousHash", this.previousHash.toHex());
+        json.put("merkleRoot", this.getMerkleRoot().toHex());
+        json.put("targetBits", this.targetBits);
         json.put("nonce", this.nonce);
         json.put("timestamp", this.timestamp);
         json.put("minerAddress", this.minerAddress);
@@ -276,16 +356,207 @@ public class Block {
     }
 
     /**
-     * Populate this block from a JSON representation.
+     * Write this block as JSON, field by field. Same text as
+     * {@code toJson().toString()}.
+     *
+     * @param writer destination
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("version").value(this.version);
+        writer.name("previousHash").value(this.previousHash.toHex());
+        writer.name("hash").value(this.hash.toHex());
+        writeContentFields(writer);
+        writer.name("transactions").beginArray();
+        for (Transaction transaction : this.transactions) {
+            transaction.writeJson(writer);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    /**
+     * Write this block's content (excluding hash) as JSON, field by field.
+     * Same text as {@code contentToJson().toString()}.
+     *
+     * @param writer destination
+     * @throws IOException if writing fails
+     */
+    public void writeContentJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("version").value(this.version);
+        writer.name("previousHash").value(this.previousHash.toHex());
+        writeContentFields(writer);
+        writer.name("transactions").beginArray();
+        for (Transaction transaction : this.transactions) {
+            transaction.writeContentJson(writer);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private void writeContentFields(JsonWriter writer) throws IOException {
+        writer.name("merkleRoot").value(this.getMerkleRoot().toHex());
+        writer.name("targetBits").value(this.targetBits);
+        writer.name("nonce").value(this.nonce);
+        writer.name("timestamp").value(this.timestamp);
+        writer.name("minerAddress").value(this.minerAddress);
+        writer.name("minerRewards").value(this.minerRewards);
+    }
+
+    /**
+     * Populate this block straight from a JSON reader, without building a
+     * JsonObject. Accepts the output of {@link #writeJson(JsonWriter)}; the
+     * Merkle root is rebuilt from the transactions and unknown fields are
+     * skipped. The block is only modified when the whole object was read.
+     *
+     * @param reader reader positioned before the block object
+     * @throws IOException if the object is malformed or a field has an
+     *                     unexpected type
+     */
+    public void readJson(JsonReader reader) throws IOException {
+        int version = 0;
+        Hash256 previousHash = Hash256.ZERO;
+        Hash256 hash = Hash256.ZERO;
+        int targetBits = 0;
+        int nonce = 0;
+        long timestamp = 0L;
+        String minerAddress = null;
+        double minerRewards = 0.0;
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "version": version = reader.nextInt(); break;
+                case "previousHash": previousHash = Hash256.parse(reader.nextString()); break;
+                case "hash": hash = Hash256.parse(reader.nextString()); break;
+                case "targetBits": targetBits = reader.nextInt(); break;
+                case "nonce": nonce = reader.nextInt(); break;
+                case "timestamp": timestamp = reader.nextLong(); break;
+                case "minerAddress": minerAddress = reader.nextString(); break;
+                case "minerRewards": minerRewards = reader.nextDouble(); break;
+                case "transactions":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        transactions.add(Transaction.readJson(reader));
+                    }
+                    reader.endArray();
+                    break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        this.version = version;
+        this.previousHash = previousHash;
+        this.hash = hash;
+        this.targetBits = targetBits;
+        this.nonce = nonce;
+        this.timestamp = timestamp;
+        this.minerAddress = minerAddress;
+        this.minerRewards = minerRewards;
+        this.transactions = transactions;
+        this.merkleTree = new MerkleTree(this.transactions);
+    }
+
+    /**
+     * First half of a header-first JSON decode: read the fields that precede
+     * "transactions" (the order written by {@link #writeJson(JsonWriter)})
+     * and stop at the transaction list. The block is left without
+     * transactions until {@link #readJsonTransactions(JsonReader)} is called.
+     *
+     * @param reader reader positioned before the block object
+     * @return header with the Merkle root announced by the sender
+     * @throws IOException if the fields are malformed
+     */
+    public BlockHeader readJsonHeader(JsonReader reader) throws IOException {
+        int version = 0;
+        Hash256 previousHash = Hash256.ZERO;
+        Hash256 hash = Hash256.ZERO;
+        Hash256 merkleRoot = Hash256.ZERO;
+        int targetBits = 0;
+        int nonce = 0;
+        long timestamp = 0L;
+        String minerAddress = null;
+        double minerRewards = 0.0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("transactions")) {
+                break;
+            }
+            switch (name) {
+                case "version": version = reader.nextInt(); break;
+                case "previousHash": previousHash = Hash256.parse(reader.nextString()); break;
+                case "hash": hash = Hash256.parse(reader.nextString()); break;
+                case "merkleRoot": merkleRoot = Hash256.parse(reader.nextString()); break;
+                case "targetBits": targetBits = reader.nextInt(); break;
+                case "nonce": nonce = reader.nextInt(); break;
+                case "timestamp": timestamp = reader.nextLong(); break;
+                case "minerAddress": minerAddress = reader.nextString(); break;
+                case "minerRewards": minerRewards = reader.nextDouble(); break;
+                default: reader.skipValue();
+            }
+        }
+
+        this.version = version;
+        this.previousHash = previousHash;
+        this.hash = hash;
+        this.targetBits = targetBits;
+        this.nonce = nonce;
+        this.timestamp = timestamp;
+        this.minerAddress = minerAddress;
+        this.minerRewards = minerRewards;
+        this.transactions = new ArrayList<Transaction>();
+        this.merkleTree = new MerkleTree(this.transactions);
+        return new BlockHeader(version, previousHash, merkleRoot,
+            BlockHeader.coinbaseHash(minerAddress, minerRewards), targetBits, timestamp, nonce);
+    }
+
+    /**
+     * Second half of a header-first JSON decode: read the transaction list
+     * and the end of the block object, and rebuild the Merkle tree. Fields
+     * after the transaction list are skipped.
+     *
+     * @param reader reader left by {@link #readJsonHeader(JsonReader)}
+     * @throws IOException if the transactions are malformed
+     */
+    public void readJsonTransactions(JsonReader reader) throws IOException {
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+        // At the "transactions" value, or at the end of an object without one
+        if (reader.hasNext()) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                transactions.add(Transaction.readJson(reader));
+            }
+            reader.endArray();
+            while (reader.hasNext()) {
+                reader.nextName();
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        this.transactions = transactions;
+        this.merkleTree = new MerkleTree(this.transactions);
+    }
+
+    /**
+     * Populate this block from a JSON representation. The Merkle root is
+     * rebuilt from the transactions; a "merkleRoot" field in the JSON is
+     * only used by {@link BlockHeader#fromJson}.
      *
      * @param json JSON representation of the block
      * @return true if parsing succeeded, false otherwise
      */
     public boolean fromJson(JsonObject json) {
         try {
-            this.previousHash = json.getString("previousHash");
-            this.hash = json.getString("hash");
-            this.miningDifficulty = json.getInt("miningDifficulty");
+            this.version = json.getInt("version");
+            this.previousHash = Hash256.parse(json.getString("previousHash"));
+            this.hash = Hash256.parse(json.getString("hash"));
+            this.targetBits = json.getInt("targetBits");
             this.nonce = json.getInt("nonce");
             this.timestamp = json.getLong("timestamp");
             this.minerAddress = json.getString("minerAddress");
@@ -294,10 +565,7 @@ public class Block {
             this.transactions.clear();
             JsonArray transactionsArray = json.getJsonArray("transactions");
             for (int i = 0; i < transactionsArray.size(); i++) {
-                JsonObject transactionJson = transactionsArray.getJsonObject(i);
-                Transaction transaction = new Transaction();
-                transaction.fromJson(transactionJson);
-                this.transactions.add(transaction);
+                this.transactions.add(Transaction.fromJson(transactionsArray.getJsonObject(i)));
             }
             this.merkleTree = new MerkleTree(this.transactions);
             return true;
@@ -315,8 +583,9 @@ public class Block {
      */
     public boolean fromContentJson(JsonObject json) {
         try {
-            this.previousHash = json.getString("previousHash");
-            this.miningDifficulty = json.getInt("miningDifficulty");
+            this.version = json.getInt("version");
+            this.previousHash = Hash256.parse(json.getString("previousHash"));
+            this.targetBits = json.getInt("targetBits");
             this.nonce = json.getInt("nonce");
             this.timestamp = json.getLong("timestamp");
             this.minerAddress = json.getString("minerAddress");
@@ -325,10 +594,7 @@ public class Block {
             this.transactions.clear();
             JsonArray transactionsArray = json.getJsonArray("transactions");
             for (int i = 0; i < transactionsArray.size(); i++) {
-                JsonObject transactionJson = transactionsArray.getJsonObject(i);
-                Transaction transaction = new Transaction();
-                transaction.fromJson(transactionJson);
-                this.transactions.add(transaction);
+                this.transactions.add(Transaction.fromJson(transactionsArray.getJsonObject(i)));
             }
             this.merkleTree = new MerkleTree(this.transactions);
             return true;
@@ -338,11 +604,105 @@ public class Block {
         }
     }
 
-    public String toHash() {
-        return HashUtils.hashString(this.toBase64());
+    /**
+     * Serialize the block in the binary wire format, prefixed with the codec
+     * version. Hashes are written as raw 32-byte values. All header fields,
+     * including the Merkle root, come before the transactions, so a receiver
+     * can check the header before decoding any transaction.
+     *
+     * @return binary representation of the block
+     */
+    public byte[] toBytes() {
+        BinaryWriter writer = new BinaryWriter(256 + 160 * this.transactions.size());
+        writer.writeByte(p2pblockchain.config.NetworkConfig.BINARY_CODEC_VERSION);
+        writer.writeVarLong(this.version);
+        writer.writeHash(this.previousHash);
+        writer.writeHash(this.hash);
+        writer.writeHash(this.getMerkleRoot());
+        writer.writeFixedInt(this.targetBits);
+        writer.writeFixedInt(this.nonce);
+        writer.writeSignedVarLong(this.timestamp);
+        writer.writeBase64(this.minerAddress);
+        writer.writeDouble(this.minerRewards);
+        writer.writeVarLong(this.transactions.size());
+        for (Transaction transaction : this.transactions) {
+            transaction.writeTo(writer);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Populate this block from its binary wire format.
+     *
+     * @param bytes binary representation returned by {@link #toBytes()}
+     * @return true if decoding succeeded, false otherwise
+     */
+    public boolean fromBytes(byte[] bytes) {
+        try {
+            BinaryReader reader = new BinaryReader(bytes);
+            if (reader.readByte() != p2pblockchain.config.NetworkConfig.BINARY_CODEC_VERSION) {
+                Logger.error("Block.fromBytes: unsupported codec version.");
+                return false;
+            }
+            this.readHeaderFrom(reader);
+            this.readTransactionsFrom(reader);
+            return !reader.hasRemaining();
+        } catch (Exception e) {
+            Logger.error("Block.fromBytes: failed to decode: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * First half of {@link #fromBytes(byte[])}: read the header fields of
+     * the binary wire format (after the codec version). The block is left
+     * without transactions until {@link #readTransactionsFrom} is called.
+     *
+     * @param reader source, positioned after the codec version
+     * @return header with the Merkle root announced by the sender
+     */
+    public BlockHeader readHeaderFrom(BinaryReader reader) {
+        this.version = (int) reader.readVarLong();
+        this.previousHash = reader.readHash256();
+        this.hash = reader.readHash256();
+        Hash256 merkleRoot = reader.readHash256();
+        this.targetBits = reader.readFixedInt();
+        this.nonce = reader.readFixedInt();
+        this.timestamp = reader.readSignedVarLong();
+        this.minerAddress = reader.readBase64();
+        this.minerRewards = reader.readDouble();
+        this.transactions = new ArrayList<Transaction>();
+        this.merkleTree = new MerkleTree(this.transactions);
+        return new BlockHeader(this.version, this.previousHash, merkleRoot,
+            BlockHeader.coinbaseHash(this.minerAddress, this.minerRewards), this.targetBits, this.timestamp, this.nonce);
     }
 
-    public String contentToHash() {
-        return HashUtils.hashString(this.contentToBase64());
+    /**
+     * Second half of {@link #fromBytes(byte[])}: read the transactions and
+     * rebuild the Merkle tree.
+     *
+     * @param reader source, positioned after the header fields
+     */
+    public void readTransactionsFrom(BinaryReader reader) {
+        int transactionCount = reader.readLength();
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            transactions.add(Transaction.readFrom(reader));
+        }
+        this.transactions = transactions;
+        this.merkleTree = new MerkleTree(this.transactions);
+    }
+
+    public Hash256 toHash() {
+        return HashUtils.hash256(this.toBase64());
+    }
+
+    /**
+     * Compute the consensus hash of this block: the hash of its binary header.
+     *
+     * @return block hash
+     */
+    public Hash256 contentToHash() {
+        return this.getHeader().toHash();
     }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package p2pblockchain.types;
+
+import java.nio.ByteBuffer;
+
+import p2pblockchain.utils.CanonicalWriter;
+import p2pblockchain.utils.DifficultyUtils;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.HashUtils;
+import p2pblockchain.utils.JsonObject;
+
+/**
+ * Fixed-size binary block header. This is what proof-of-work and the block
+ * hash are computed over.
+ *
+ * Layout (big-endian, {@link #SIZE} bytes):
+ * <pre>
+ *   offset  size  field
+ *        0     4  version
+ *        4    32  previous block hash
+ *       36    32  Merkle root of the transactions
+ *       68    32  coinbase hash (miner address and rewards)
+ *      100     4  proof-of-work target (compact form, see DifficultyUtils)
+ *      104     8  timestamp (epoch milliseconds)
+ *      112     4  nonce
+ * </pre>
+ *
+ * The transactions are committed through the Merkle root, so hashing the
+ * header costs the same for every block and a header can be checked for
+ * proof-of-work without looking at the transactions.
+ */
+public class BlockHeader {
+    // 3: Merkle leaves and the coinbase hash use the canonical encoding
+    public static final int CURRENT_VERSION = 3;
+    public static final int HASH_SIZE = 32;
+
+    public static final int VERSION_OFFSET = 0;
+    public static final int PREVIOUS_HASH_OFFSET = 4;
+    public static final int MERKLE_ROOT_OFFSET = PREVIOUS_HASH_OFFSET + HASH_SIZE;
+    public static final int COINBASE_HASH_OFFSET = MERKLE_ROOT_OFFSET + HASH_SIZE;
+    public static final int TARGET_BITS_OFFSET = COINBASE_HASH_OFFSET + HASH_SIZE;
+    public static final int TIMESTAMP_OFFSET = TARGET_BITS_OFFSET + 4;
+    public static final int NONCE_OFFSET = TIMESTAMP_OFFSET + 8;
+    public static final int SIZE = NONCE_OFFSET + 4;
+
+    private int version;
+    private Hash256 previousHash;
+    private Hash256 merkleRoot;
+    private Hash256 coinbaseHash;
+    private int targetBits;
+    private long timestamp;
+    private int nonce;
+
+    /**
+     * Create a header with all fields specified.
+     */
+    public BlockHeader(
+            int version,
+            Hash256 previousHash,
+            Hash256 merkleRoot,
+            Hash256 coinbaseHash,
+            int targetBits,
+            long timestamp,
+            int nonce
+    ) {
+        this.version = version;
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot;
+        this.coinbaseHash = coinbaseHash;
+        this.targetBits = targetBits;
+        this.timestamp = timestamp;
+        this.nonce = nonce;
+    }
+
+    public int getVersion() {return version;}
+    public Hash256 getPreviousHash() {return previousHash;}
+    public Hash256 getMerkleRoot() {return merkleRoot;}
+    public Hash256 getCoinbaseHash() {return coinbaseHash;}
+    public int getTargetBits() {return targetBits;}
+    public long getTimestamp() {return timestamp;}
+    public int getNonce() {return nonce;}
+
+    /**
+     * Build the header fields from a block JSON object (as produced by
+     * Block.toJson()) without decoding any of its transactions.
+     *
+     * @param json JSON representation of a block
+     * @return header described by the JSON
+     */
+    public static BlockHeader fromJson(JsonObject json) {
+        return new BlockHeader(
+            json.getInt("version"),
+            Hash256.parse(json.getString("previousHash")),
+            Hash256.parse(json.getString("merkleRoot")),
+            coinbaseHash(json.getString("minerAddress"), json.getDouble("minerRewards")),
+            json.getInt("targetBits"),
+            json.getLong("timestamp"),
+            json.getInt("nonce")
+        );
+    }
+
+    /**
+     * Serialize the header to its fixed-width binary form.
+     *
+     * @return {@link #SIZE} bytes
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(VERSION_OFFSET, this.version);
+        this.previousHash.writeTo(bytes, PREVIOUS_HASH_OFFSET);
+        this.merkleRoot.writeTo(bytes, MERKLE_ROOT_OFFSET);
+        this.coinbaseHash.writeTo(bytes, COINBASE_HASH_OFFSET);
+        buffer.putInt(TARGET_BITS_OFFSET, this.targetBits);
+        buffer.putLong(TIMESTAMP_OFFSET, this.timestamp);
+        buffer.putInt(NONCE_OFFSET, this.nonce);
+        return bytes;
+    }
+
+    /**
+     * Decode a header from its binary form.
+     *
+     * @param bytes header bytes (at least {@link #SIZE})
+     * @return decoded header
+     */
+    public static BlockHeader fromBytes(byte[] bytes) {
+        if (bytes.length < SIZE) {
+            throw new IllegalArgumentException("Header must be " + SIZE + " bytes, got " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new BlockHeader(
+            buffer.getInt(VERSION_OFFSET),
+            Hash256.of(bytes, PREVIOUS_HASH_OFFSET),
+            Hash256.of(bytes, MERKLE_ROOT_OFFSET),
+            Hash256.of(bytes, COINBASE_HASH_OFFSET),
+            buffer.getInt(TARGET_BITS_OFFSET),
+            buffer.getLong(TIMESTAMP_OFFSET),
+            buffer.getInt(NONCE_OFFSET)
+        );
+    }
+
+    /**
+     * Compute the block hash, i.e. the hash of the binary header.
+     *
+     * @return header hash
+     */
+    public Hash256 toHash() {
+        return HashUtils.hash256(this.toBytes());
+    }
+
+    /**
+     * Compute the raw block hash digest, for comparison against a target.
+     *
+     * @return raw digest bytes of the binary header
+     */
+    public byte[] toHashBytes() {
+        return HashUtils.digestBytes(this.toBytes());
+    }
+
+    /**
+     * Check that this header's hash meets its own proof-of-work target.
+     *
+     * @return true if the header hash is lower than or equal to the target
+     */
+    public boolean meetsTarget() {
+        return DifficultyUtils.meetsTarget(this.toHashBytes(), DifficultyUtils.compactToTarget(this.targetBits));
+    }
+
+    /**
+     * Hash committing to the miner address and rewards. Those fields are not
+     * transactions, so they are not covered by the Merkle root.
+     *
+     * @param minerAddress address credited with the rewards
+     * @param minerRewards rewards paid to the miner
+     * @return coinbase hash
+     */
+    public static Hash256 coinbaseHash(String minerAddress, double minerRewards) {
+        CanonicalWriter writer = new CanonicalWriter(128);
+        writer.putTag(CanonicalWriter.TAG_COINBASE);
+        writer.putString(minerAddress);
+        writer.putDouble(minerRewards);
+        return HashUtils.hash256(writer.toByteArray());
+    }
+
+    @Override
+    public String toString() {
+        return "BlockHeader{" +
+                "version=" + version +
+                ", previousHash='" + previousHash + '\'' +
+                ", merkleRoot='" + merkleRoot + '\'' +
+                ", coinbaseHash='" + coinbaseHash + '\'' +
+                ", targetBits=" + targetBits +
+                ", timestamp=" + timestamp +
+                ", nonce=" + nonce +
+                '}';
+    }
+}
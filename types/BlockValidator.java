@@ -0,0 +1,249 @@
+package p2pblockchain.types;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+import java.util.function.Predicate;
+
+import p2pblockchain.utils.DifficultyUtils;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.LatencyHistogram;
+import p2pblockchain.utils.Logger;
+import p2pblockchain.utils.TimeUtils;
+
+/**
+ * Staged validation of blocks received from the network, cheapest checks
+ * first.
+ *
+ * <ol>
+ *   <li>{@link Stage#HEADER}: payload size, linkage to the chain tip,
+ *       timestamp, expected target, proof-of-work and hash of the 116-byte
+ *       header.
+ *       Runs before any transaction is decoded, so junk and stale blocks
+ *       cost one header hash.</li>
+ *   <li>{@link Stage#BODY}: transaction count, duplicate transactions
+ *       (within the block and against the chain) and the Merkle root of the
+ *       decoded transactions against the header.</li>
+ *   <li>{@link Stage#SIGNATURES}: transaction signatures, through the
+ *       {@link SignatureVerifier}.</li>
+ * </ol>
+ *
+ * The consensus rules ({@link #checkHeaderRules}, {@link #checkBody}) are
+ * shared with the {@link ChainVerifier}, so a cloned chain is held to the
+ * same rules as blocks received one by one.
+ *
+ * The checks return a rejection reason (null when they pass) and
+ * {@link #record} accounts the outcome, so every stage has its own
+ * accepted/rejected counters and latency histogram. The caller decodes the
+ * block between stages and includes the decoding in the stage timing.
+ */
+public class BlockValidator {
+    /** Rejection reason of a block we already have (normal with gossip, not logged as an error). */
+    public static final String DUPLICATE = "block is already in the chain";
+
+    public enum Stage {
+        HEADER, BODY, SIGNATURES
+    }
+
+    private final SignatureVerifier signatureVerifier;
+    private final LongAdder[] passed = new LongAdder[Stage.values().length];
+    private final LongAdder[] rejected = new LongAdder[Stage.values().length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Stage.values().length];
+
+    public BlockValidator(SignatureVerifier signatureVerifier) {
+        this.signatureVerifier = signatureVerifier;
+        for (Stage stage : Stage.values()) {
+            this.passed[stage.ordinal()] = new LongAdder();
+            this.rejected[stage.ordinal()] = new LongAdder();
+            this.latencies[stage.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Header stage: checks that need nothing but the header.
+     *
+     * @param header header rebuilt from the received fields (with the
+     *               claimed Merkle root)
+     * @param claimedHash hash announced with the block
+     * @param payloadSize size of the received payload in bytes (its binary
+     *                    encoding for a block received already decoded)
+     * @param chain current chain (not empty)
+     * @param expectedTargetBits target the next block must use
+     * @return rejection reason, or null if the header is valid
+     */
+    public String checkHeader(BlockHeader header, Hash256 claimedHash, int payloadSize, List<Block> chain, int expectedTargetBits) {
+        if (payloadSize > p2pblockchain.config.BlockchainConfig.MAX_BLOCK_BYTES) {
+            return "payload of " + payloadSize + " bytes exceeds the block size limit";
+        }
+        if (!header.getPreviousHash().equals(chain.getLast().getHash())) {
+            // Only now look for a duplicate: a block extending the tip cannot be in the chain
+            for (Block block : chain) {
+                if (block.getHash().equals(claimedHash)) {
+                    return DUPLICATE;
+                }
+            }
+            return "block does not extend the chain tip";
+        }
+        return checkHeaderRules(header, claimedHash, height -> chain.get(height).getTimestamp(), chain.size(), expectedTargetBits, TimeUtils.getNowAsLong());
+    }
+
+    /**
+     * Consensus rules of a header at a given height: timestamp, expected
+     * target, proof-of-work and hash. Linkage is left to the caller, which
+     * knows the block the header must extend.
+     *
+     * Used for received blocks, cloned chains ({@link ChainVerifier}) and
+     * light node headers ({@link LightClient}), so all of them accept exactly
+     * the same headers.
+     *
+     * @param header header to check
+     * @param claimedHash hash announced with the block
+     * @param timestampAt timestamp of the block at a lower height
+     * @param height height of the header
+     * @param expectedTargetBits target the block at that height must use
+     * @param now local time, in milliseconds
+     * @return rejection reason, or null if the header is valid
+     */
+    public static String checkHeaderRules(BlockHeader header, Hash256 claimedHash, IntToLongFunction timestampAt, int height, int expectedTargetBits, long now) {
+        String rejection = checkTimestamp(header.getTimestamp(), timestampAt, height, now);
+        if (rejection != null) {
+            return rejection;
+        }
+        // The target is derived from the chain itself, so every node
+        // expects exactly the same value at a given height
+        if (header.getTargetBits() != expectedTargetBits) {
+            return "unexpected target (expected " + Integer.toHexString(expectedTargetBits) + ", got " + Integer.toHexString(header.getTargetBits()) + ")";
+        }
+        byte[] headerHash = header.toHashBytes();
+        if (!DifficultyUtils.meetsTarget(headerHash, DifficultyUtils.compactToTarget(expectedTargetBits))) {
+            return "header does not meet the proof-of-work target";
+        }
+        if (!Hash256.of(headerHash).equals(claimedHash)) {
+            return "header hash is invalid";
+        }
+        return null;
+    }
+
+    /**
+     * Timestamp rule of a header. The timestamp must be later than the
+     * median timestamp of the previous {@code MEDIAN_TIME_SPAN} blocks, so a
+     * block may be a little older than its parent (clock skew between
+     * miners), and at most {@code MAX_FUTURE_BLOCK_TIME_MS} ahead of the
+     * local clock. Timestamps feed the difficulty adjustment, so this bounds
+     * how far a miner can skew it.
+     *
+     * @param timestamp timestamp of the header
+     * @param timestampAt timestamp of the block at a lower height
+     * @param height height of the header
+     * @param now local time, in milliseconds
+     * @return rejection reason, or null if the timestamp is valid
+     */
+    public static String checkTimestamp(long timestamp, IntToLongFunction timestampAt, int height, long now) {
+        if (timestamp > now + p2pblockchain.config.BlockchainConfig.MAX_FUTURE_BLOCK_TIME_MS) {
+            return "timestamp is too far in the future";
+        }
+        if (height == 0) {
+            return null;
+        }
+        int span = Math.min(height, p2pblockchain.config.BlockchainConfig.MEDIAN_TIME_SPAN);
+        long[] previous = new long[span];
+        for (int i = 0; i < span; i++) {
+            previous[i] = timestampAt.applyAsLong(height - span + i);
+        }
+        Arrays.sort(previous);
+        if (timestamp <= previous[span / 2]) {
+            return "timestamp is not later than the median of the previous blocks";
+        }
+        return null;
+    }
+
+    /**
+     * Body stage: checks of the decoded transactions against the header and
+     * the chain below the block. A transaction may only appear once in a
+     * chain.
+     *
+     * @param block decoded block
+     * @param header header that passed {@link #checkHeader}
+     * @param included tells whether a transaction is already in a block
+     *                 below this one
+     * @return rejection reason, or null if the body is valid
+     */
+    public String checkBody(Block block, BlockHeader header, Predicate<Transaction> included) {
+        List<Transaction> transactions = block.getTransactions();
+        if (transactions.size() > p2pblockchain.config.BlockchainConfig.MAX_TRANSACTIONS_PER_BLOCK) {
+            return transactions.size() + " transactions exceed the per-block limit";
+        }
+        if (new HashSet<Transaction>(transactions).size() != transactions.size()) {
+            return "block contains duplicate transactions";
+        }
+        if (!block.getMerkleRoot().equals(header.getMerkleRoot())) {
+            return "transactions do not match the header Merkle root";
+        }
+        for (Transaction transaction : transactions) {
+            if (included.test(transaction)) {
+                return "transaction already included in an earlier block";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Signature stage: all transaction signatures, checked in parallel.
+     *
+     * @param block decoded block
+     * @return rejection reason, or null if every signature is valid
+     */
+    public String checkSignatures(Block block) {
+        int invalid = this.signatureVerifier.findInvalid(block.getTransactions());
+        if (invalid >= 0) {
+            return "transaction " + invalid + " has a tampered signature";
+        }
+        return null;
+    }
+
+    /**
+     * Account the outcome of a stage and log rejections.
+     *
+     * @param stage stage that ran
+     * @param startNanos {@link System#nanoTime()} when the stage started
+     * @param rejection rejection reason, or null if the stage passed
+     * @return true if the stage passed
+     */
+    public boolean record(Stage stage, long startNanos, String rejection) {
+        this.latencies[stage.ordinal()].record(System.nanoTime() - startNanos);
+        if (rejection == null) {
+            this.passed[stage.ordinal()].increment();
+            return true;
+        }
+        this.rejected[stage.ordinal()].increment();
+        if (rejection.equals(DUPLICATE)) {
+            Logger.log("Received block is already in the chain. Discarding.");
+        } else {
+            Logger.error("Received block rejected at " + stage.name().toLowerCase() + " stage: " + rejection + ". Discarding.");
+        }
+        return false;
+    }
+
+    public long getPassed(Stage stage) {return this.passed[stage.ordinal()].sum();}
+    public long getRejected(Stage stage) {return this.rejected[stage.ordinal()].sum();}
+
+    /**
+     * Snapshot of the per-stage counters and latencies.
+     *
+     * @return JSON object with one entry per stage
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        for (Stage stage : Stage.values()) {
+            JsonObject stageJson = new JsonObject();
+            stageJson.put("passed", getPassed(stage));
+            stageJson.put("rejected", getRejected(stage));
+            stageJson.put("latency", this.latencies[stage.ordinal()].toJson());
+            json.put(stage.name().toLowerCase(), stageJson);
+        }
+        return json;
+    }
+}
@@ -2,23 +2,37 @@ package p2pblockchain.types;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.net.Socket;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 
 import p2pblockchain.utils.Base64Utils;
-import p2pblockchain.utils.HashUtils;
+import p2pblockchain.utils.BinaryReader;
+import p2pblockchain.utils.CompressionUtils;
+import p2pblockchain.utils.DifficultyUtils;
+import p2pblockchain.utils.Hash256;
 import p2pblockchain.utils.Logger;
-import p2pblockchain.utils.NonceGenerator;
-import p2pblockchain.utils.SecurityUtils;
 import p2pblockchain.utils.TimeUtils;
 import p2pblockchain.utils.JsonArray;
 import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.JsonReader;
+import p2pblockchain.utils.JsonWriter;
 
 /**
  * Core Blockchain container and node state.
@@ -36,11 +50,33 @@ import p2pblockchain.utils.JsonObject;
 public class Blockchain {
     private Wallet wallet;    
     private P2PNode myNode;
-    private int difficulty = 0;
-    private boolean mining = true;
+    private int targetBits = 0;
+    private volatile boolean mining = true;
     private ArrayList<Block> chain;
+    // Mempool; every access holds chainLock, so it stays consistent with
+    // the chain and with the running mining job
     private ArrayList<Transaction> pendingTransactions;
     private ArrayList<P2PNode> p2pNodes;
+    private Miner miner;
+    private SignatureVerifier signatureVerifier;
+    private BlockValidator blockValidator;
+    private ChainVerifier chainVerifier;
+    private final WorkManager workManager = new WorkManager();
+    private final MiningStats miningStats = new MiningStats();
+    // Incremented whenever the chain tip changes; lets the miner detect
+    // that its template is outdated
+    private volatile long tipVersion = 0;
+    private volatile int pendingAtJobStart = 0;
+    private volatile int transactionsInJob = 0;
+    // Transactions taken out of the pending pool by the running local job,
+    // still offered to external miners; updated under chainLock together
+    // with the pool and the chain
+    private volatile List<Transaction> jobTransactions = List.of();
+    // Monitor the mining loop parks on while there is nothing to mine
+    private final Object miningSignal = new Object();
+    // Guards chain tip changes and the pending pool: the check that a block
+    // extends the tip and its append happen under this lock
+    private final Object chainLock = new Object();
 
     /**
      * Get the local node identity.
@@ -70,10 +106,15 @@ public class Blockchain {
         wallet = new Wallet(walletName);
         Logger.info("Account loaded : " + wallet.getAccount());
         Logger.log("Node address : " + myNode.getNodeAddress() + ":" + myNode.getNodePort());
-        difficulty = p2pblockchain.config.BlockchainConfig.INITIAL_DIFFICULTY;
+        targetBits = p2pblockchain.config.BlockchainConfig.INITIAL_TARGET_BITS;
         chain = new ArrayList<Block>();
         pendingTransactions = new ArrayList<Transaction>();
         p2pNodes = new ArrayList<P2PNode>();
+        miner = new Miner(p2pblockchain.config.BlockchainConfig.getMiningThreads());
+        Logger.log("Mining engine using " + miner.getThreadCount() + " worker thread(s).");
+        signatureVerifier = new SignatureVerifier(p2pblockchain.config.BlockchainConfig.getVerifyThreads());
+        blockValidator = new BlockValidator(signatureVerifier);
+        chainVerifier = new ChainVerifier(blockValidator, signatureVerifier);
         // Create genesis block
         createGenesisBlock();
     }
@@ -112,7 +153,7 @@ public class Blockchain {
     /**
      * Return a JSON representation of this blockchain suitable for serialization
      * and network exchange. This uses the project's JsonObject/JsonArray helpers
-     * and contains the wallet account, difficulty, mining flag, peers, chain
+     * and contains the wallet account, target, mining flag, peers, chain
      * and pending transactions.
      *
      * NOTE: Keep human-readable toString() for logs; this method is meant for
@@ -123,7 +164,7 @@ public class Blockchain {
     public JsonObject toJson() {
         JsonObject json = new JsonObject();
         json.put("wallet", this.wallet == null ? "" : this.wallet.getAccount());
-        json.put("difficulty", this.difficulty);
+        json.put("targetBits", this.targetBits);
         json.put("mining", this.mining);
 
         JsonArray nodes = new JsonArray();
@@ -144,7 +185,7 @@ public class Blockchain {
 
         JsonArray pending = new JsonArray();
         if (this.pendingTransactions != null) {
-            for (Transaction t : this.pendingTransactions) {
+            for (Transaction t : pendingSnapshot()) {
                 pending.add(t.toJson());
             }
         }
@@ -170,7 +211,8 @@ public class Blockchain {
      * Mine a new block and add it to the blockchain.
      *
      * This method performs proof-of-work by iterating nonces until the
-     * difficulty target is matched. When a block is successfully mined it
+     * difficulty target is matched. The nonce search is spread across the
+     * worker threads of the {@link Miner}. When a block is successfully mined it
      * is appended to the local chain and broadcast to peers using the
      * block JSON/Base64 format.
      */
@@ -178,94 +220,164 @@ public class Blockchain {
         if (!this.mining) {
             return;
         }
-        if (pendingTransactions.isEmpty() && !chain.isEmpty()) {
-            Logger.log("No pending transactions to include in the new block. Skipping mining.");
-            return;
-        }
 
         Instant startTime = Instant.now();
-        String prefixZeros = new String(new char[difficulty]).replace('\0', '0');
-        
-        // Initialize a new block
         Block newBlock = new Block();
-        newBlock.setMiningDifficulty(difficulty);
-        newBlock.setMinerAddress(wallet.getAccount());
-        newBlock.setMinerRewards(p2pblockchain.config.BlockchainConfig.MINING_REWARDS);
+        long jobTipVersion;
+        synchronized (this.chainLock) {
+            if (pendingTransactions.isEmpty() && !chain.isEmpty()) {
+                Logger.log("No pending transactions to include in the new block. Skipping mining.");
+                return;
+            }
+            this.targetBits = nextTargetBits();
 
-        // Set previous hash
-        if (chain.isEmpty()) {
-            newBlock.setPreviousHash("0");
-        } else {
-            newBlock.setPreviousHash(chain.getLast().getHash());
-            newBlock = addTransactionsToBlock(newBlock);
+            // Initialize a new block
+            newBlock.setTargetBits(targetBits);
+            newBlock.setMinerAddress(wallet.getAccount());
+            newBlock.setMinerRewards(p2pblockchain.config.BlockchainConfig.MINING_REWARDS);
+
+            // Set previous hash
+            if (chain.isEmpty()) {
+                newBlock.setPreviousHash(Hash256.ZERO);
+            } else {
+                newBlock.setPreviousHash(chain.getLast().getHash());
+                newBlock = addTransactionsToBlock(newBlock);
+            }
+
+            jobTipVersion = this.tipVersion;
+            this.pendingAtJobStart = this.pendingTransactions.size();
+            this.transactionsInJob = newBlock.getTransactions().size();
+            this.jobTransactions = List.copyOf(newBlock.getTransactions());
         }
 
-        // Proof of Work
-        while (true) {
-            newBlock.setNonce(NonceGenerator.getNonce());
-            newBlock.setTimestamp(TimeUtils.getNowAsLong());
+        // Proof of Work (aborted by receiveBlock/receiveTransaction when the
+        // template becomes outdated)
+        Block minedBlock = miner.mine(newBlock, targetBits, () -> this.tipVersion != jobTipVersion);
+        if (minedBlock == null) {
+            Logger.log("Mining job ended without a block. Returning transactions to pending pool.");
+            miningStats.recordAbortedJob();
+            returnTransactionsToPending(newBlock);
+            return;
+        }
+        newBlock = minedBlock;
 
-            String tempHash = HashUtils.hashString(newBlock.contentToBase64());
-            if (tempHash.startsWith(prefixZeros)) {
-                newBlock.setHash(tempHash);
-                break;
+        Instant endTime = Instant.now();
+        long timeTaken = Duration.between(startTime, endTime).toMillis();
+        miningStats.recordBlockFound(timeTaken);
+        Logger.log("Hash found: " + newBlock.getHash() + " (Difficulty: " + formatDifficulty(targetBits) + ", Time taken: " + timeTaken + " ms, " + miner.getLastJobAttempts() + " hashes)");
+
+        // Check block in case another block is added while mining; the
+        // check and the append are atomic against received blocks
+        boolean added;
+        synchronized (this.chainLock) {
+            Hash256 tipHash = chain.isEmpty() ? Hash256.ZERO : chain.getLast().getHash();
+            added = newBlock.getPreviousHash().equals(tipHash);
+            if (added) {
+                chain.addLast(newBlock);
+                this.tipVersion++;
+                this.jobTransactions = List.of();
             }
         }
 
-        Instant endTime = Instant.now();
-        Logger.log("Hash found: " + newBlock.getHash() + " (Difficulty: " + difficulty + ", Time taken: " + Duration.between(startTime, endTime).toMillis() + " ms)");
-
-        // Check block in case another block is added while mining
-        if (!chain.isEmpty()) {
-            Block lastBlock = chain.getLast();
-            if (!newBlock.getPreviousHash().equals(lastBlock.getHash())) {
-                Logger.warn("Conflict detected: Chain advanced while mining. Mined block is now orphaned.");
-                // CONFLICT: Chain advanced while mining. This block is now orphaned.
-                // Strategy: find unique transactions and return them to pending pool.
-                ArrayList<Transaction> newBlockTransactions = newBlock.getTransactions();
-                
-                // Find the common ancestor block
-                int differentFrom = 0;
-                for (int i = 0; i < this.chain.size(); i++) {
-                    if (this.chain.get(i).getHash().contentEquals(newBlock.getPreviousHash())) {
-                        differentFrom = i;
-                    }
-                }
+        if (!added) {
+            Logger.warn("Conflict detected: Chain advanced while mining. Mined block is now orphaned.");
+            miner.recordStaleHashes(miner.getLastJobAttempts());
+            miningStats.recordOrphan();
+            // CONFLICT: Chain advanced while mining. This block is now orphaned.
+            // Strategy: find unique transactions and return them to pending pool.
+            returnTransactionsToPending(newBlock);
+        } else {
+            Logger.info("New block mined and added to chain");
+            // send JSON(Base64) produced by Block.toBase64()
+            this.broadcastNetworkMessage(MessageType.BCAST_BLOCK, newBlock.toBase64(), Base64Utils.encode(newBlock.toBytes()));
+        }
+    }
 
-                // Remove transactions already included in blocks added after fork point
-                for (int i = differentFrom; i < this.chain.size(); i++) {
-                    Block duringBlock = chain.get(i);
-                    for (Transaction transactionInDuringBlock : duringBlock.getTransactions()) {
-                        for (Transaction transactionInNewBlock : newBlockTransactions) {
-                            if (transactionInDuringBlock.toHash().contentEquals(transactionInNewBlock.toHash())) {
-                                newBlockTransactions.remove(transactionInNewBlock);
-                                Logger.log("Transaction already included in chain after fork point, not returning to pending pool: " + transactionInNewBlock.toString());
-                            }
-                        }
-                    }
-                }
+    /**
+     * Block the calling thread until there is something to mine: mining is
+     * enabled and either the chain needs its genesis block or transactions
+     * are pending. The thread is woken by {@link #startMining()}, new
+     * transactions, chain tip changes and blockchain syncs, so an idle node
+     * uses no CPU.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void awaitMiningWork() throws InterruptedException {
+        synchronized (this.miningSignal) {
+            while (!hasMiningWork()) {
+                this.miningSignal.wait();
+            }
+        }
+    }
 
-                // Return remaining unique transactions to pending pool for re-mining
-                if (!newBlockTransactions.isEmpty()) {
-                    for (Transaction transactionInNewBlock : newBlockTransactions) {
-                        this.pendingTransactions.addLast(transactionInNewBlock);
-                        Logger.log("Returning unique transaction from orphaned block to pending pool: " + transactionInNewBlock.toString());
-                    }
+    private boolean hasMiningWork() {
+        // Called with miningSignal held: chainLock is always taken after it
+        synchronized (this.chainLock) {
+            return this.mining && (this.chain.isEmpty() || !this.pendingTransactions.isEmpty());
+        }
+    }
+
+    /**
+     * Copy of the pending pool, safe to iterate while other threads update it.
+     */
+    private ArrayList<Transaction> pendingSnapshot() {
+        synchronized (this.chainLock) {
+            return new ArrayList<Transaction>(this.pendingTransactions);
+        }
+    }
+
+    /**
+     * Wake the mining loop so it re-evaluates whether there is work to do.
+     */
+    private void signalMiner() {
+        synchronized (this.miningSignal) {
+            this.miningSignal.notifyAll();
+        }
+    }
+
+    /**
+     * Put the transactions of a block that will not join the chain (aborted
+     * or orphaned) back into the pending pool, skipping those already
+     * included in blocks added after its parent, and end the mining job
+     * that held them.
+     *
+     * @param abandonedBlock block whose transactions should be re-mined
+     */
+    private void returnTransactionsToPending(Block abandonedBlock) {
+        synchronized (this.chainLock) {
+            ArrayList<Transaction> abandonedTransactions = new ArrayList<Transaction>(abandonedBlock.getTransactions());
+
+            // Find the common ancestor block
+            int differentFrom = 0;
+            for (int i = 0; i < this.chain.size(); i++) {
+                if (this.chain.get(i).getHash().equals(abandonedBlock.getPreviousHash())) {
+                    differentFrom = i + 1;
                 }
+            }
 
-            } else {
-                // No conflict, add the new block
-                chain.addLast(newBlock);
-                Logger.info("New block mined and added to chain");
-                // send JSON(Base64) produced by Block.toBase64()
-                this.broadcastNetworkMessage(MessageType.BCAST_BLOCK, newBlock.toBase64());
+            // Remove transactions already included in blocks added after fork point
+            HashSet<Transaction> includedAfterFork = new HashSet<Transaction>();
+            for (int i = differentFrom; i < this.chain.size(); i++) {
+                includedAfterFork.addAll(chain.get(i).getTransactions());
             }
+            abandonedTransactions.removeIf(transactionInAbandonedBlock -> {
+                if (includedAfterFork.contains(transactionInAbandonedBlock)) {
+                    Logger.log("Transaction already included in chain after fork point, not returning to pending pool: " + transactionInAbandonedBlock.toString());
+                    return true;
+                }
+                return false;
+            });
 
-        } else {
-            // Chain is empty, add the new block
-            chain.addLast(newBlock);
-            Logger.info("New block mined and added to chain");
-            this.broadcastNetworkMessage(MessageType.BCAST_BLOCK, newBlock.toBase64());
+            // Return remaining unique transactions to pending pool for re-mining
+            for (Transaction transaction : abandonedTransactions) {
+                // Received again while it was out of the pool
+                if (this.pendingTransactions.contains(transaction)) {
+                    continue;
+                }
+                this.pendingTransactions.addLast(transaction);
+                Logger.log("Returning unique transaction from abandoned block to pending pool: " + transaction.toString());
+            }
+            this.jobTransactions = List.of();
         }
     }
 
@@ -274,6 +386,7 @@ public class Blockchain {
      */
     public void startMining() {
         this.mining = true;
+        signalMiner();
         Logger.log("Mining started.");
     }
 
@@ -282,9 +395,197 @@ public class Blockchain {
      */
     public void stopMining() {
         this.mining = false;
+        miner.abort("mining stopped");
         Logger.log("Mining stopped.");
     }
 
+    /**
+     * Hand out a block template to an external miner process.
+     *
+     * The template is built from the current chain tip, the transactions of
+     * the running local mining job and a snapshot of the pending
+     * transactions, so external miners compete for the same block as the
+     * local miner; the pending pool itself is left untouched. The tip, its
+     * version, the target and the transactions are read in one snapshot
+     * under chainLock, so the work always matches the tip version it is
+     * recorded with. No work is handed out while mining is stopped or when
+     * there is nothing to mine.
+     *
+     * @param minerId identifier chosen by the external miner
+     * @return JSON describing the work (see WorkManager), or null if there is none
+     */
+    public JsonObject getWork(String minerId) {
+        long workTipVersion;
+        Hash256 tipHash;
+        int workTargetBits;
+        ArrayList<Transaction> candidates;
+        synchronized (this.chainLock) {
+            if (!this.mining || this.chain.isEmpty()) {
+                return null;
+            }
+            candidates = new ArrayList<Transaction>(this.jobTransactions);
+            for (Transaction transaction : this.pendingTransactions) {
+                if (!candidates.contains(transaction)) {
+                    candidates.add(transaction);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return null;
+            }
+            workTipVersion = this.tipVersion;
+            tipHash = this.chain.getLast().getHash();
+            workTargetBits = nextTargetBits();
+        }
+
+        Block template = new Block();
+        template.setTargetBits(workTargetBits);
+        template.setMinerAddress(wallet.getAccount());
+        template.setMinerRewards(p2pblockchain.config.BlockchainConfig.MINING_REWARDS);
+        template.setPreviousHash(tipHash);
+        template.setTimestamp(TimeUtils.getNowAsLong());
+
+        candidates.sort(Comparator.comparingDouble(p2pblockchain.types.Transaction::getFee));
+        int count = Math.min(candidates.size(), p2pblockchain.config.BlockchainConfig.MAX_TRANSACTIONS_PER_BLOCK);
+        for (int i = 0; i < count; i++) {
+            template.addTransaction(candidates.get(i));
+        }
+
+        Logger.log("Handing out work to external miner " + minerId + " (" + count + " transactions)");
+        return workManager.createWork(template, workTipVersion);
+    }
+
+    /**
+     * Hash of the current chain tip, polled by external miners to detect
+     * that their work is outdated without requesting a new template.
+     *
+     * @return hash of the last block, or {@link Hash256#ZERO} if the chain is empty
+     */
+    public Hash256 getTipHash() {
+        ArrayList<Block> blocks = this.chain;
+        return blocks.isEmpty() ? Hash256.ZERO : blocks.getLast().getHash();
+    }
+
+    /**
+     * Validate a solution submitted by an external miner.
+     *
+     * The block is rebuilt from the work template, checked against the share
+     * target, and when it also meets the block target it goes through the
+     * normal block validation and is broadcast like any received block.
+     * A block rejected by validation is INVALID; it is STALE only when the
+     * chain tip moved before it could be appended.
+     *
+     * @param minerId   identifier chosen by the external miner
+     * @param workId    work id from {@link #getWork}
+     * @param nonce     nonce found by the miner
+     * @param timestamp timestamp used by the miner
+     * @return outcome of the submission
+     */
+    public WorkManager.Result submitWork(String minerId, String workId, int nonce, long timestamp) {
+        WorkManager.Result result;
+        long submitTipVersion = this.tipVersion;
+        if (!workManager.isOutstanding(workId)) {
+            result = WorkManager.Result.STALE;
+        } else {
+            Block solved = workManager.solve(workId, nonce, timestamp, submitTipVersion);
+            if (solved == null) {
+                result = WorkManager.Result.INVALID;
+            } else if (!solved.getHeader().meetsTarget()) {
+                result = WorkManager.Result.SHARE;
+            } else if (receiveBlock(solved)) {
+                result = WorkManager.Result.BLOCK;
+                Logger.info("External miner " + minerId + " found a block: " + solved.getHash());
+            } else if (this.tipVersion != submitTipVersion) {
+                result = WorkManager.Result.STALE;
+            } else {
+                result = WorkManager.Result.INVALID;
+                Logger.warn("External miner " + minerId + " submitted a block that failed validation: " + solved.getHash());
+            }
+        }
+        workManager.record(minerId, result);
+        return result;
+    }
+
+    /**
+     * Snapshot of the local mining telemetry: blocks found, orphaned blocks,
+     * aborted jobs, time per block, attempts and hash rate per worker.
+     *
+     * @return JSON object with the mining counters
+     */
+    public JsonObject getMiningStats() {
+        return miningStats.toJson(miner);
+    }
+
+    /**
+     * Snapshot of block validation: accepted/rejected counts and latency
+     * histogram of each stage.
+     *
+     * @return JSON object with one entry per stage
+     */
+    public JsonObject getValidationStats() {
+        return blockValidator.toJson();
+    }
+
+    /**
+     * Counters of the verified-signature cache: hits are signatures that
+     * did not need checking again.
+     *
+     * @return JSON object with the cache counters
+     */
+    public JsonObject getSignatureCacheStats() {
+        return signatureVerifier.getCacheStats();
+    }
+
+    /**
+     * Binary headers of the chain from a given height, for light nodes.
+     *
+     * @param fromHeight height of the first header
+     * @param maxHeaders maximum number of headers returned
+     * @return concatenated {@link BlockHeader#SIZE}-byte headers (empty if
+     *         the chain is not that long)
+     */
+    public byte[] getHeaders(int fromHeight, int maxHeaders) {
+        List<Block> blocks = this.chain;
+        int from = Math.max(0, fromHeight);
+        int to = Math.min(blocks.size(), from + maxHeaders);
+        if (from >= to) {
+            return new byte[0];
+        }
+        byte[] headers = new byte[(to - from) * BlockHeader.SIZE];
+        for (int height = from; height < to; height++) {
+            System.arraycopy(blocks.get(height).getHeader().toBytes(), 0, headers, (height - from) * BlockHeader.SIZE, BlockHeader.SIZE);
+        }
+        return headers;
+    }
+
+    /**
+     * Inclusion proof of a transaction of the chain, for light nodes.
+     *
+     * @param transactionId id of the transaction ({@link Transaction#toHash()})
+     * @return proof against the header of the block holding it, or null if
+     *         the transaction is not in the chain
+     */
+    public MerkleProof getMerkleProof(Hash256 transactionId) {
+        List<Block> blocks = this.chain;
+        // Recent blocks first: light nodes mostly ask about fresh payments
+        for (int height = blocks.size() - 1; height >= 0; height--) {
+            Block block = blocks.get(height);
+            List<Transaction> transactions = block.getTransactions();
+            for (int i = 0; i < transactions.size(); i++) {
+                if (transactions.get(i).toHash().equals(transactionId)) {
+                    return block.getMerkleProof(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Describe the submissions of external miners, one line per miner.
+     */
+    public ArrayList<String> describeExternalMiners() {
+        return workManager.describeMiners();
+    }
+
     /**
      * Serialize the full blockchain as Base64(JSON) for storage or network transmission.
      *
@@ -308,7 +609,7 @@ public class Blockchain {
             String walletAccount = json.getString("wallet");
             this.wallet = new Wallet(walletAccount);
 
-            this.difficulty = json.getInt("difficulty");
+            this.targetBits = json.getInt("targetBits");
             this.mining = json.getBoolean("mining");
 
             this.p2pNodes.clear();
@@ -329,13 +630,14 @@ public class Blockchain {
                 this.chain.add(b);
             }
 
-            this.pendingTransactions.clear();
+            ArrayList<Transaction> pending = new ArrayList<Transaction>();
             JsonArray pend = json.getJsonArray("pendingTransactions");
             for (int i = 0; i < pend.size(); i++) {
-                JsonObject tj = pend.getJsonObject(i);
-                Transaction t = new Transaction();
-                t.fromJson(tj);
-                this.pendingTransactions.add(t);
+                pending.add(Transaction.fromJson(pend.getJsonObject(i)));
+            }
+            synchronized (this.chainLock) {
+                this.pendingTransactions.clear();
+                this.pendingTransactions.addAll(pending);
             }
 
             return true;
@@ -347,85 +649,153 @@ public class Blockchain {
     }
 
     /**
-     * Receive and validate a block from the network.
+     * Receive and validate a block from the network in its Base64(JSON) form.
      *
-     * The method checks for duplicates, previous-hash linkage, difficulty,
-     * proof-of-work, hash correctness, Merkle root and transaction
-     * signatures. If valid, the block is appended and broadcast locally.
+     * The header fields are read first and go through the header stage of
+     * the {@link BlockValidator} before any transaction is decoded. Only
+     * blocks that pass have their transactions decoded and checked against
+     * the committed Merkle root, then their signatures verified.
      *
-     * @param newBlock block received from peer
+     * @param blockInBase64 Base64(JSON(block)) received from a peer
      * @return true if the block was accepted and added to the chain
      */
-    public boolean receiveBlock(Block newBlock) {
-        for (Block block : this.chain) {
-            if (block.getHash().contentEquals(newBlock.getHash())) {
-                Logger.log("Received block is already in the chain. Discarding.");
-                return false;
-            }
+    public boolean receiveBlock(String blockInBase64) {
+        long start = System.nanoTime();
+        Block newBlock = new Block();
+        BlockHeader header;
+        JsonReader reader;
+        String rejection;
+        try {
+            reader = new JsonReader(Base64Utils.decodeToString(blockInBase64));
+            header = newBlock.readJsonHeader(reader);
+            rejection = this.blockValidator.checkHeader(header, newBlock.getHash(), blockInBase64.length(), this.chain, nextTargetBits());
+        } catch (Exception e) {
+            header = null;
+            reader = null;
+            rejection = "header cannot be decoded";
+        }
+        if (!this.blockValidator.record(BlockValidator.Stage.HEADER, start, rejection)) {
+            return false;
         }
 
-        if (newBlock.getPreviousHash().contentEquals(this.chain.getLast().getHash())) {
-            // Validate the block's difficulty against the last block's difficulty
-            // The new block should have the same difficulty as the chain expects at this point
-            int expectedDifficulty = this.chain.getLast().getMiningDifficulty();
-            
-            // Allow some flexibility: the new block's difficulty should be within ±1 of expected
-            if (Math.abs(newBlock.getMiningDifficulty() - expectedDifficulty) > 1) {
-                Logger.error("Received block has incompatible difficulty (expected ~" + expectedDifficulty + ", got " + newBlock.getMiningDifficulty() + "). Discarding.");
-                return false;
-            }
+        start = System.nanoTime();
+        try {
+            newBlock.readJsonTransactions(reader);
+            rejection = this.blockValidator.checkBody(newBlock, header, this::isInChain);
+        } catch (Exception e) {
+            rejection = "transactions cannot be decoded";
+        }
+        if (!this.blockValidator.record(BlockValidator.Stage.BODY, start, rejection)) {
+            return false;
+        }
+        return acceptBlock(newBlock);
+    }
 
-            // If the block doesn't meet the proof of work, discard it
-            String prefixZeros = new String(new char[newBlock.getMiningDifficulty()]).replace('\0', '0');
-            if (!newBlock.getHash().startsWith(prefixZeros)) {
-                Logger.error("Received block does not meet the difficulty requirement. Discarding.");
-                return false;
+    /**
+     * Receive and validate a block from the network in the binary wire
+     * format. Same stages as {@link #receiveBlock(String)}: the header is
+     * checked before any transaction is decoded.
+     *
+     * @param blockBytes binary block (see Block.toBytes())
+     * @return true if the block was accepted and added to the chain
+     */
+    public boolean receiveBlock(byte[] blockBytes) {
+        long start = System.nanoTime();
+        Block newBlock = new Block();
+        BlockHeader header;
+        BinaryReader reader;
+        String rejection;
+        try {
+            reader = new BinaryReader(blockBytes);
+            if (reader.readByte() != p2pblockchain.config.NetworkConfig.BINARY_CODEC_VERSION) {
+                throw new IllegalArgumentException("unsupported codec version");
             }
+            header = newBlock.readHeaderFrom(reader);
+            rejection = this.blockValidator.checkHeader(header, newBlock.getHash(), blockBytes.length, this.chain, nextTargetBits());
+        } catch (Exception e) {
+            header = null;
+            reader = null;
+            rejection = "binary header cannot be decoded";
+        }
+        if (!this.blockValidator.record(BlockValidator.Stage.HEADER, start, rejection)) {
+            return false;
+        }
 
-            // If the block hash is invalid, discard it
-            if (!newBlock.getHash().contentEquals(HashUtils.hashString(newBlock.contentToBase64()))) {
-                Logger.error("Received block hash is invalid. Discarding.");
-                return false;
-            }
+        start = System.nanoTime();
+        try {
+            newBlock.readTransactionsFrom(reader);
+            rejection = reader.hasRemaining() ? "trailing data after the transactions" : this.blockValidator.checkBody(newBlock, header, this::isInChain);
+        } catch (Exception e) {
+            rejection = "binary transactions cannot be decoded";
+        }
+        if (!this.blockValidator.record(BlockValidator.Stage.BODY, start, rejection)) {
+            return false;
+        }
+        return acceptBlock(newBlock);
+    }
 
-            // If the Merkle root is invalid, discard it
-            if (!newBlock.getMerkleRoot().contentEquals(new MerkleTree(newBlock.getTransactions()).getMerkleRoot())) {
-                Logger.error("Received block has invalid Merkle root. Discarding.");
-                return false;
-            }
+    /**
+     * Receive and validate an already decoded block (e.g. solved by an
+     * external miner), through all stages of the {@link BlockValidator}. Its
+     * size is that of its binary encoding, so it is held to the same block
+     * size limit as blocks from the network.
+     *
+     * @param newBlock block received from peer
+     * @return true if the block was accepted and added to the chain
+     */
+    public boolean receiveBlock(Block newBlock) {
+        long start = System.nanoTime();
+        BlockHeader header = newBlock.getHeader();
+        String rejection = this.blockValidator.checkHeader(header, newBlock.getHash(), newBlock.toBytes().length, this.chain, nextTargetBits());
+        if (!this.blockValidator.record(BlockValidator.Stage.HEADER, start, rejection)) {
+            return false;
+        }
+        start = System.nanoTime();
+        if (!this.blockValidator.record(BlockValidator.Stage.BODY, start, this.blockValidator.checkBody(newBlock, header, this::isInChain))) {
+            return false;
+        }
+        return acceptBlock(newBlock);
+    }
 
-            // If any transaction signature is invalid, discard it
-            for (Transaction transaction : newBlock.getTransactions()) {
-                if (!SecurityUtils.isSignatureValid(transaction.getSender(), transaction.contentToBase64(), transaction.getSignature())) {
-                    Logger.error("Received block contains tampered transaction signature. Discarding.");
-                    return false;
-                }
+    /**
+     * Last validation stage and chain update for a block whose header and
+     * body were checked: verify the transaction signatures (in parallel,
+     * skipping those already verified, e.g. on mempool admission), then
+     * append the block and broadcast it.
+     *
+     * @param newBlock block that passed the header and body stages
+     * @return true if the block was added to the chain
+     */
+    private boolean acceptBlock(Block newBlock) {
+        long start = System.nanoTime();
+        if (!this.blockValidator.record(BlockValidator.Stage.SIGNATURES, start, this.blockValidator.checkSignatures(newBlock))) {
+            return false;
+        }
+
+        synchronized (this.chainLock) {
+            // The tip may have moved (e.g. a block of ours, or the same block
+            // gossiped by another peer) while signatures were checked
+            if (!newBlock.getPreviousHash().equals(this.chain.getLast().getHash())) {
+                Logger.warn("Chain tip changed while the received block was validated. Discarding.");
+                return false;
             }
 
             // Remove included transactions from pending list
-            for (Transaction transaction : newBlock.getTransactions()) {
-                for (Transaction pendingTransaction : this.pendingTransactions) {
-                    if (transaction.toHash().contentEquals(pendingTransaction.toHash())) {
-                        this.pendingTransactions.remove(pendingTransaction);
-                        break;
-                    }
-                }
-            }
+            this.pendingTransactions.removeAll(new HashSet<Transaction>(newBlock.getTransactions()));
 
             Logger.info("Received valid block. Adding to chain");
             Logger.log("Block details: " + newBlock.toString());
             this.chain.addLast(newBlock);
-            
-            // Update local difficulty to match the received block
-            this.difficulty = newBlock.getMiningDifficulty();
-            
-            this.broadcastNetworkMessage(MessageType.BCAST_BLOCK, newBlock.toBase64());
-            return true;
-            
-        } else {
-            Logger.error("Received block is not valid. Discarding.");
-            return false;
+            this.tipVersion++;
+
+            // Update local target to match the received block
+            this.targetBits = newBlock.getTargetBits();
         }
+        miner.abort("new chain tip");
+        signalMiner();
+        
+        this.broadcastNetworkMessage(MessageType.BCAST_BLOCK, newBlock.toBase64(), Base64Utils.encode(newBlock.toBytes()));
+        return true;
     }
 
     /**
@@ -440,32 +810,33 @@ public class Blockchain {
      * @return true if the transaction was accepted and added to pending
      */
     public boolean receiveTransaction(Transaction newTransaction) {
-        if (SecurityUtils.isSignatureValid(newTransaction.getSender(), newTransaction.contentToBase64(), newTransaction.getSignature())) {
+        if (this.signatureVerifier.verify(newTransaction)) {
 
             if ((newTransaction.getFee() + newTransaction.getAmount()) > getAccountBalance(newTransaction.getSender())) {
                 Logger.error("Received transaction exceeds sender's balance. Discarding.");
                 return false;
             } else {
-                // Checking for duplicate transactions
-                for (Transaction pendingTransaction : this.pendingTransactions) {
-                    if (newTransaction.toHash().contentEquals(pendingTransaction.toHash())) {
-                        Logger.error("Received duplicate transaction. Discarding.");
-                        return false;
+                // Checking for duplicate transactions; the checks and the
+                // insert are atomic against other handlers and block appends
+                String duplicate = null;
+                synchronized (this.chainLock) {
+                    if (this.pendingTransactions.contains(newTransaction) || this.jobTransactions.contains(newTransaction)) {
+                        duplicate = "Received duplicate transaction. Discarding.";
+                    } else if (isInChain(newTransaction)) {
+                        duplicate = "Received transaction is already included in the chain. Discarding.";
+                    } else {
+                        pendingTransactions.add(newTransaction);
+                        abortMiningIfMempoolChanged();
                     }
                 }
-                for (Block block : this.chain) {
-                    for (Transaction blockTransaction : block.getTransactions()) {
-                        if (newTransaction.toHash().contentEquals(blockTransaction.toHash())) {
-                            Logger.error("Received transaction is already included in the chain. Discarding.");
-                            return false;
-                        }
-                    }
+                if (duplicate != null) {
+                    Logger.error(duplicate);
+                    return false;
                 }
-
-                pendingTransactions.add(newTransaction);
+                signalMiner();
                 Logger.info("Received valid transaction. Added to pending list");
                 Logger.log("Transaction details: " + newTransaction.toString());
-                this.broadcastNetworkMessage(MessageType.BCAST_TRANSACT, newTransaction.toBase64());
+                this.broadcastNetworkMessage(MessageType.BCAST_TRANSACT, newTransaction.toBase64(), Base64Utils.encode(newTransaction.toBytes()));
                 return true;
             }
 
@@ -475,6 +846,36 @@ public class Blockchain {
         }
     }
 
+    /**
+     * Check whether a transaction is included in a block of the chain.
+     *
+     * @param transaction transaction to look for
+     * @return true if a block of the chain holds the transaction
+     */
+    private boolean isInChain(Transaction transaction) {
+        ArrayList<Block> blocks = this.chain;
+        // Indexed, as blocks may be appended meanwhile
+        for (int i = 0; i < blocks.size(); i++) {
+            if (blocks.get(i).getTransactions().contains(transaction)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restart the running mining job when enough transactions arrived since
+     * it started and the block being mined still has room for them.
+     * Called with chainLock held.
+     */
+    private void abortMiningIfMempoolChanged() {
+        int arrived = this.pendingTransactions.size() - this.pendingAtJobStart;
+        if (arrived >= p2pblockchain.config.BlockchainConfig.MINING_RESTART_PENDING_THRESHOLD
+                && this.transactionsInJob < p2pblockchain.config.BlockchainConfig.MAX_TRANSACTIONS_PER_BLOCK) {
+            miner.abort(arrived + " new pending transactions");
+        }
+    }
+
     /**
      * Add a new peer node and broadcast it to other peers.
      *
@@ -483,7 +884,7 @@ public class Blockchain {
      */
     public boolean receiveP2PNode(P2PNode newNode) {
         if (this.addP2PNodes(newNode)) {
-            this.broadcastNetworkMessage(MessageType.BCAST_NEWNODE, newNode.toBase64(), newNode);
+            this.broadcastNetworkMessage(MessageType.BCAST_NEWNODE, newNode.toBase64(), Base64Utils.encode(newNode.toBytes()), newNode);
         } else {
             Logger.warn("Failed to add duplicate P2P node: " + newNode.toString());
             return false;
@@ -494,89 +895,100 @@ public class Blockchain {
     /**
      * Request and clone the full blockchain from a given peer.
      *
-     * This will stop local mining, clear the local chain and pending
-     * transactions, and replace them with the chain received from the
-     * remote node. The received payload is expected to be a Base64(JSON)
+     * This will stop local mining and replace the local chain and pending
+     * transactions with the chain received from the remote node, once the
+     * whole received chain passed the {@link ChainVerifier}. The received
+     * payload is expected to be a Base64(JSON), compressed when the peer
+     * accepts USE_COMPRESSED_EXCHANGE.
      *
      * @param node peer to request chain from
      * @return true on success, false on failure
      */
     public boolean getBlockchainFrom(P2PNode node) {
         // Stop mining before syncing blockchain
+        boolean wasMining = this.mining;
         this.mining = false;
+        miner.abort("syncing blockchain");
 
         if (!this.chain.isEmpty()) {
             Logger.warn("Local Chain is not empty!");
             Logger.warn("Syncing blockchain will overwrite local chain.");
-            this.chain.clear();
-            this.pendingTransactions.clear();
         }
 
         Logger.info("Cloning blockchain from node " + node.toString() + " ...");
 
+        ArrayList<Block> clonedChain;
         try {
             node.connect();
-            if (node.isConnected()) {
-                Socket nodeSocket = node.getNodeSocket();
-                BufferedReader socketInput = new BufferedReader(new InputStreamReader(nodeSocket.getInputStream()));
-                BufferedWriter socketOutput = new BufferedWriter(new OutputStreamWriter(nodeSocket.getOutputStream()));
-
-                socketOutput.write(MessageType.CLONE_CHAIN + "\n");
+            if (!node.isConnected()) {
+                Logger.error("Failed to clone blockchain from node " + node.toString() + ": not connected.");
+                this.mining = wasMining;
+                signalMiner();
+                return false;
+            }
+            Socket nodeSocket = node.getNodeSocket();
+            InputStream socketInput = new BufferedInputStream(nodeSocket.getInputStream());
+            BufferedWriter socketOutput = new BufferedWriter(new OutputStreamWriter(nodeSocket.getOutputStream()));
+
+            boolean compressed = false;
+            if (p2pblockchain.config.NetworkConfig.PREFER_COMPRESSED_EXCHANGE) {
+                // Older nodes answer Error and keep sending the uncompressed payload
+                socketOutput.write(MessageType.USE_COMPRESSED_EXCHANGE + "\n");
                 socketOutput.flush();
-
-                String encodedBlockchain = socketInput.readLine();
-                // encodedBlockchain is expected to be Base64(JSON) produced by toBase64ForExchange()
-                this.fromBase64OfExchange(encodedBlockchain);
-
-                // Integrity check after cloning
-                if (this.chain.size() > 2) {
-                    for (int i = 0; i < this.chain.size() - 2; i++) {
-                        // Check previous hash linkage
-                        if (!this.chain.get(i + 1).getPreviousHash().contentEquals(this.chain.get(i).getHash())) {
-                            Logger.error("Blockchain integrity check failed after cloning: previous hash linkage failed. Discarding cloned chain.");
-                            this.chain.clear();
-                            this.pendingTransactions.clear();
-                            return false;
-                        }
-
-                        // Check timestamp order
-                        if (this.chain.get(i + 1).getTimestamp() < this.chain.get(i).getTimestamp()) {
-                            Logger.error("Blockchain integrity check failed after cloning: timestamp order invalid. Discarding cloned chain.");
-                            this.chain.clear();
-                            this.pendingTransactions.clear();
-                            return false;
-                        }
-                    }
-                }
-
-                socketInput.close();
-                socketOutput.close();
-                node.disconnect();
-                Logger.info("Blockchain cloned successfully from node " + node.toString() + ". Current chain length: " + this.chain.size());
-                
-                // Synchronize difficulty with the cloned chain
-                if (!this.chain.isEmpty()) {
-                    Block lastBlock = this.chain.getLast();
-                    this.difficulty = lastBlock.getMiningDifficulty();
-                    Logger.log("Synchronized difficulty to " + this.difficulty + " from cloned chain.");
+                try (InputStream answer = Base64Utils.decodingLineStream(socketInput)) {
+                    compressed = new String(answer.readAllBytes(), StandardCharsets.UTF_8).contentEquals("Ok");
                 }
-                
-                // Restart mining after successful clone
-                this.mining = true;
-                Logger.info("Mining restarted after blockchain sync.");
             }
-            return true;
 
+            socketOutput.write(MessageType.CLONE_CHAIN + "\n");
+            socketOutput.flush();
+
+            // The response is one line produced by writeExchange(), parsed as it arrives
+            clonedChain = readExchangeBlocks(socketInput, compressed);
+
+            socketInput.close();
+            socketOutput.close();
+            node.disconnect();
         } catch (Exception e) {
             Logger.error("Failed to clone blockchain from node " + node.toString() + ".");
             e.printStackTrace();
+            this.mining = wasMining;
+            signalMiner();
+            return false;
+        }
+
+        // Verify the whole cloned chain before it replaces ours
+        ChainVerifier.Report report = this.chainVerifier.verify(clonedChain);
+        report.log();
+        if (clonedChain.isEmpty() || !report.isValid()) {
+            Logger.error("Blockchain integrity check failed after cloning. Discarding cloned chain.");
+            this.mining = wasMining;
+            signalMiner();
             return false;
         }
+
+        synchronized (this.chainLock) {
+            this.chain = clonedChain;
+            this.pendingTransactions.clear();
+            this.tipVersion++;
+        }
+        Logger.info("Blockchain cloned successfully from node " + node.toString() + ". Current chain length: " + this.chain.size());
+
+        // Synchronize target with the cloned chain
+        this.targetBits = nextTargetBits();
+        Logger.log("Synchronized difficulty to " + formatDifficulty(this.targetBits) + " from cloned chain.");
+
+        // Restart mining after successful clone
+        this.mining = true;
+        signalMiner();
+        Logger.info("Mining restarted after blockchain sync.");
+        return true;
     }
 
     /**
      * Fill the provided block with pending transactions up to the
      * configured maximum per block. Transactions are prioritized by fee.
+     * Called with chainLock held.
      *
      * @param block block to populate
      * @return the same block instance with transactions added
@@ -610,23 +1022,83 @@ public class Blockchain {
             return;
         }
 
-        if (chain.size() % p2pblockchain.config.BlockchainConfig.DIFFICULTY_ADJUSTMENT_INTERVAL == 0 && chain.size() != 0) {
-            long timestampStart = chain.get(chain.size() - p2pblockchain.config.BlockchainConfig.DIFFICULTY_ADJUSTMENT_INTERVAL).getTimestamp();
-            long timestampEnd = chain.getLast().getTimestamp();
-            long elapsedTime = ChronoUnit.SECONDS.between(
-                TimeUtils.longTimestampToInstant(timestampStart),
-                TimeUtils.longTimestampToInstant(timestampEnd)
-            );
+        int newTargetBits = nextTargetBits();
+        if (newTargetBits != this.targetBits) {
+            Logger.log("Adjusting mining difficulty from " + formatDifficulty(this.targetBits) + " to " + formatDifficulty(newTargetBits));
+            this.targetBits = newTargetBits;
+        }
+    }
 
-            double averageBlockTime = (double) elapsedTime / p2pblockchain.config.BlockchainConfig.DIFFICULTY_ADJUSTMENT_INTERVAL;
-            if (averageBlockTime > (double) p2pblockchain.config.BlockchainConfig.TARGET_BLOCK_TIME_SECONDS) {
-                difficulty = Math.max(1, difficulty - 1);
-                Logger.log("Decreasing mining difficulty to " + difficulty + " (Average block time: " + averageBlockTime + " seconds)");
-            } else {
-                difficulty += 1;
-                Logger.log("Increasing mining difficulty to " + difficulty + " (Average block time: " + averageBlockTime + " seconds)");
-            }
+    /**
+     * Compute the target the next block on top of the current chain must use.
+     *
+     * @return compact target for the next block
+     * @see #nextTargetBits(List, int)
+     */
+    public int nextTargetBits() {
+        return nextTargetBits(this.chain, this.chain.size());
+    }
+
+    /**
+     * Compute the target the block at a given height must use.
+     *
+     * Every {@code DIFFICULTY_ADJUSTMENT_INTERVAL} blocks the target is scaled
+     * by the ratio between the observed and the expected timespan of the
+     * last interval (clamped to {@code MAX_RETARGET_FACTOR}); otherwise the
+     * target of the previous block is kept. The result only depends on the
+     * blocks below that height, so miners and validators agree on it.
+     *
+     * @param blocks chain holding at least {@code height} blocks
+     * @param height index of the block whose target is computed
+     * @return compact target for the block at that height
+     */
+    public static int nextTargetBits(List<Block> blocks, int height) {
+        int interval = p2pblockchain.config.BlockchainConfig.DIFFICULTY_ADJUSTMENT_INTERVAL;
+        if (height == 0) {
+            return p2pblockchain.config.BlockchainConfig.INITIAL_TARGET_BITS;
+        }
+
+        Block lastBlock = blocks.get(height - 1);
+        if (height % interval != 0) {
+            return lastBlock.getTargetBits();
         }
+
+        return retargetBits(lastBlock.getTargetBits(), blocks.get(height - interval).getTimestamp(), lastBlock.getTimestamp());
+    }
+
+    /**
+     * Scale a target by the ratio between the observed and the expected
+     * timespan of an adjustment interval.
+     *
+     * @param lastTargetBits target of the last block of the interval
+     * @param intervalStart timestamp of the first block of the interval
+     * @param intervalEnd timestamp of the last block of the interval
+     * @return compact target for the block after the interval
+     */
+    public static int retargetBits(int lastTargetBits, long intervalStart, long intervalEnd) {
+        // Timestamps of the first and last block of the interval span
+        // (interval - 1) block times
+        long actualTimespan = Duration.between(
+            TimeUtils.longTimestampToInstant(intervalStart),
+            TimeUtils.longTimestampToInstant(intervalEnd)
+        ).toMillis();
+        long expectedTimespan = (p2pblockchain.config.BlockchainConfig.DIFFICULTY_ADJUSTMENT_INTERVAL - 1)
+            * p2pblockchain.config.BlockchainConfig.TARGET_BLOCK_TIME_SECONDS * 1000L;
+
+        return DifficultyUtils.retarget(
+            lastTargetBits,
+            actualTimespan,
+            expectedTimespan,
+            p2pblockchain.config.BlockchainConfig.MAX_RETARGET_FACTOR,
+            p2pblockchain.config.BlockchainConfig.POW_LIMIT_BITS
+        );
+    }
+
+    /**
+     * Human-readable difficulty for logs: ratio to the easiest target.
+     */
+    private static String formatDifficulty(int targetBits) {
+        return String.format("%.3f", DifficultyUtils.difficulty(targetBits, p2pblockchain.config.BlockchainConfig.POW_LIMIT_BITS));
     }
 
     /**
@@ -718,7 +1190,7 @@ public class Blockchain {
             return;
         }
         Logger.log("Broadcasting leave network message to all peers...");
-        this.broadcastNetworkMessage(MessageType.LEAVE_NETWORK, this.myNode.toBase64());
+        this.broadcastNetworkMessage(MessageType.LEAVE_NETWORK, this.myNode.toBase64(), Base64Utils.encode(this.myNode.toBytes()));
         Logger.log("Leave network message sent to all peers.");
     }
 
@@ -759,6 +1231,23 @@ public class Blockchain {
      * @param messageContent payload string
      */
     public void broadcastNetworkMessage(String MessageType, String messageContent, P2PNode... excludeNodes) {
+        broadcastNetworkMessage(MessageType, messageContent, null, excludeNodes);
+    }
+
+    /**
+     * Send a message to all known peers, using the binary payload on
+     * connections where the peer accepts the binary codec and the
+     * Base64(JSON) payload otherwise.
+     *
+     * The codec is switched per connection with a USE_BINARY_CODEC line.
+     * Peers known to accept it get both lines at once; peers that refused it
+     * once (older nodes answer Error) are sent JSON directly afterwards.
+     *
+     * @param MessageType identifier of message type
+     * @param messageContent Base64(JSON) payload
+     * @param binaryContent Base64(binary) payload, or null to always send JSON
+     */
+    public void broadcastNetworkMessage(String MessageType, String messageContent, String binaryContent, P2PNode... excludeNodes) {
         Logger.log("Broadcasting [" + MessageType + "] message : " + messageContent);
 
         // Iterate over a snapshot to avoid ConcurrentModification when
@@ -809,8 +1298,30 @@ public class Blockchain {
             try {
                 socketInput = new BufferedReader(new InputStreamReader(node.getNodeSocket().getInputStream()));
                 socketOutput = new BufferedWriter(new OutputStreamWriter(node.getNodeSocket().getOutputStream()));
-                socketOutput.write(MessageType + ", " + messageContent + "\n");
-                socketOutput.flush();
+                String payload = messageContent;
+                if (binaryContent != null && p2pblockchain.config.NetworkConfig.PREFER_BINARY_CODEC && node.getBinaryCodec() != Boolean.FALSE) {
+                    socketOutput.write(p2pblockchain.types.MessageType.USE_BINARY_CODEC + "\n");
+                    if (node.getBinaryCodec() == Boolean.TRUE) {
+                        // Known peer: send both lines at once, then read the codec answer
+                        socketOutput.write(MessageType + ", " + binaryContent + "\n");
+                        socketOutput.flush();
+                        socketInput.readLine();
+                        payload = null;
+                    } else {
+                        // Unknown peer: wait for its answer before choosing the payload
+                        socketOutput.flush();
+                        String codecResponse = socketInput.readLine();
+                        boolean accepted = codecResponse != null && Base64Utils.decodeToString(codecResponse).contentEquals("Ok");
+                        node.setBinaryCodec(accepted);
+                        if (accepted) {
+                            payload = binaryContent;
+                        }
+                    }
+                }
+                if (payload != null) {
+                    socketOutput.write(MessageType + ", " + payload + "\n");
+                    socketOutput.flush();
+                }
 
                 Logger.log("Message sent to node " + node.toString());
 
@@ -860,8 +1371,9 @@ public class Blockchain {
             if (chainString.length() > 0) chainString.setLength(chainString.length() - 1);
         }
 
-        if (this.pendingTransactions != null && !this.pendingTransactions.isEmpty()) {
-            for (Transaction transaction : this.pendingTransactions) {
+        ArrayList<Transaction> pending = this.pendingTransactions == null ? new ArrayList<Transaction>() : pendingSnapshot();
+        if (!pending.isEmpty()) {
+            for (Transaction transaction : pending) {
                 pendingTransactionsString.append(transaction.toString()).append(":");
             }
             pendingTransactionsString.setLength(pendingTransactionsString.length() - 1);
@@ -870,7 +1382,7 @@ public class Blockchain {
         String walletId = (this.wallet == null) ? "null" : (this.wallet.getAccount() != null ? this.wallet.getAccount() : "null");
 
         return "Blockchain [wallet:" + walletId +
-                ", difficulty:" + Integer.toString(this.difficulty) +
+                ", targetBits:" + Integer.toHexString(this.targetBits) +
                 ", mining:" + Boolean.toString(this.mining) +
                 ", p2pNodes:" + p2pNodesString.toString() +
                 ", chain:" + chainString.toString() +
@@ -884,15 +1396,69 @@ public class Blockchain {
      * @return Base64 encoded JSON containing the chain
      */
     public String toBase64ForExchange() {
-        JsonObject json = new JsonObject();
-        JsonArray chainArray = new JsonArray();
-        if (this.chain != null) {
-            for (Block b : this.chain) {
-                chainArray.add(b.toJson());
-            }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeExchange(out);
+        } catch (IOException e) {
+            // Not thrown by an in-memory stream
+            throw new UncheckedIOException(e);
         }
-        json.put("chain", chainArray);
-        return Base64Utils.encodeToString(json.toString());
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Stream the chain exchange payload (same format as
+     * {@link #toBase64ForExchange()}, without line terminator) to a socket or
+     * file. Blocks are serialized one at a time, so the whole payload is never
+     * held in memory. The stream is flushed but not closed.
+     *
+     * @param out destination stream
+     * @throws IOException if writing fails
+     */
+    public void writeExchange(OutputStream out) throws IOException {
+        writeExchange(out, false);
+    }
+
+    /**
+     * Stream the chain exchange payload, optionally compressed. The
+     * compressed payload is Base64(deflate(JSON)), see {@link CompressionUtils}.
+     *
+     * @param out destination stream
+     * @param compressed true to deflate the JSON before Base64 encoding
+     * @throws IOException if writing fails
+     */
+    public void writeExchange(OutputStream out, boolean compressed) throws IOException {
+        // Snapshot the block list: the miner and network threads may append while we stream
+        ArrayList<Block> blocks = this.chain == null ? new ArrayList<Block>() : new ArrayList<Block>(this.chain);
+        writeExchange(blocks, out, compressed);
+    }
+
+    /**
+     * Stream the given blocks as a chain exchange payload.
+     *
+     * @param blocks blocks to send, in chain order
+     * @param out destination stream
+     * @param compressed true to deflate the JSON before Base64 encoding
+     * @throws IOException if writing fails
+     */
+    public static void writeExchange(List<Block> blocks, OutputStream out, boolean compressed) throws IOException {
+        long start = System.nanoTime();
+        CompressionUtils.CountingOutputStream wire = new CompressionUtils.CountingOutputStream(out);
+        OutputStream base64 = Base64Utils.encodingStream(wire);
+        CompressionUtils.CountingOutputStream raw = new CompressionUtils.CountingOutputStream(
+            compressed ? CompressionUtils.deflatingStream(base64) : base64);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(raw, StandardCharsets.UTF_8));
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name("chain").beginArray();
+        for (Block b : blocks) {
+            b.writeJson(json);
+        }
+        json.endArray();
+        json.endObject();
+        // Closing writes the Base64 padding; the underlying stream stays open
+        writer.close();
+        Logger.log(exchangeStats("Sent", blocks.size(), compressed, raw.getCount(), wire.getCount(), start));
     }
 
     /**
@@ -902,17 +1468,38 @@ public class Blockchain {
      * @return true on success, false on parse error
      */
     public boolean fromBase64OfExchange(String blockchainAsBase64) {
+        if (blockchainAsBase64 == null) {
+            Logger.error("Failed to decode Blockchain from Base64 for exchange: empty payload.");
+            return false;
+        }
+        return readExchange(new ByteArrayInputStream(blockchainAsBase64.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Populate only the chain from an exchange payload read from a socket or
+     * file. Reads one line of Base64(JSON) and materializes blocks one at a
+     * time as they are parsed; the chain is only replaced once the whole
+     * payload was read successfully.
+     *
+     * @param in source stream, positioned at the start of the payload line
+     * @return true on success, false on read or parse error
+     */
+    public boolean readExchange(InputStream in) {
+        return readExchange(in, false);
+    }
+
+    /**
+     * Populate only the chain from an exchange payload, optionally
+     * compressed (see {@link #writeExchange(OutputStream, boolean)}). Logs
+     * the compression ratio and decode throughput.
+     *
+     * @param in source stream, positioned at the start of the payload line
+     * @param compressed true if the payload is Base64(deflate(JSON))
+     * @return true on success, false on read or parse error
+     */
+    public boolean readExchange(InputStream in, boolean compressed) {
         try {
-            String jsonStr = Base64Utils.decodeToString(blockchainAsBase64);
-            JsonObject json = new JsonObject(jsonStr);
-            JsonArray chainArray = json.getJsonArray("chain");
-            this.chain = new ArrayList<Block>();
-            for (int i = 0; i < chainArray.size(); i++) {
-                JsonObject bj = chainArray.getJsonObject(i);
-                Block b = new Block();
-                b.fromJson(bj);
-                this.chain.add(b);
-            }
+            this.chain = readExchangeBlocks(in, compressed);
             return true;
         } catch (Exception e) {
             Logger.error("Failed to decode Blockchain from Base64 for exchange.");
@@ -920,7 +1507,59 @@ public class Blockchain {
             return false;
         }
     }
+
+    /**
+     * Decode the blocks of a chain exchange payload, without touching any
+     * chain.
+     *
+     * @param in source stream, positioned at the start of the payload line
+     * @param compressed true if the payload is Base64(deflate(JSON))
+     * @return blocks in chain order
+     * @throws IOException if the payload cannot be read or parsed, or
+     *         exceeds {@code NetworkConfig.MAX_EXCHANGE_BYTES} of JSON
+     */
+    public static ArrayList<Block> readExchangeBlocks(InputStream in, boolean compressed) throws IOException {
+        long start = System.nanoTime();
+        CompressionUtils.CountingInputStream wire = new CompressionUtils.CountingInputStream(in);
+        InputStream base64 = Base64Utils.decodingLineStream(wire);
+        // Capped after decompression, so a small deflated payload cannot
+        // expand without bound
+        CompressionUtils.CountingInputStream raw = new CompressionUtils.CountingInputStream(
+            compressed ? CompressionUtils.inflatingStream(base64) : base64,
+            p2pblockchain.config.NetworkConfig.MAX_EXCHANGE_BYTES);
+        Reader reader = new InputStreamReader(raw, StandardCharsets.UTF_8);
+        JsonReader json = new JsonReader(reader);
+        ArrayList<Block> blocks = new ArrayList<Block>();
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!json.nextName().equals("chain")) {
+                json.skipValue();
+                continue;
+            }
+            json.beginArray();
+            while (json.hasNext()) {
+                Block b = new Block();
+                b.readJson(json);
+                blocks.add(b);
+            }
+            json.endArray();
+        }
+        json.endObject();
+        Logger.info(exchangeStats("Received", blocks.size(), compressed, raw.getCount(), wire.getCount(), start));
+        return blocks;
+    }
     
+    /**
+     * Summarize a chain exchange: sizes, compression ratio (JSON bytes per
+     * wire byte, Base64 included) and JSON throughput.
+     */
+    private static String exchangeStats(String direction, int blockCount, boolean compressed, long jsonBytes, long wireBytes, long startNanos) {
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        return String.format("%s chain of %d blocks (%s): %d bytes of JSON as %d bytes on the wire, ratio %.2f, %.1f ms, %.1f MB/s",
+            direction, blockCount, compressed ? "compressed" : "uncompressed", jsonBytes, wireBytes,
+            wireBytes == 0 ? 0.0 : (double) jsonBytes / wireBytes, seconds * 1000, jsonBytes / seconds / 1e6);
+    }
+
     /**
      * Get all wallets from the wallets directory with their addresses and balances.
      * 
@@ -0,0 +1,155 @@
+package p2pblockchain.types;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.Logger;
+import p2pblockchain.utils.TimeUtils;
+
+/**
+ * Full verification of a chain received as a whole (chain cloning).
+ *
+ * Runs in two passes:
+ *
+ * <ol>
+ *   <li>Headers, in chain order: linkage to the previous block (the first
+ *       block must link to {@link Hash256#ZERO}), then the header and body
+ *       rules of the {@link BlockValidator} that received blocks go
+ *       through: {@link BlockValidator#checkHeaderRules} and
+ *       {@link BlockValidator#checkBody}. This pass costs one header hash
+ *       per block, as the Merkle roots were already computed while
+ *       decoding.</li>
+ *   <li>Signatures of all transactions of the chain, in one parallel pass
+ *       of the {@link SignatureVerifier}, so the workers stay busy across
+ *       block boundaries.</li>
+ * </ol>
+ *
+ * Every outcome is returned as a {@link Report} holding the throughput of
+ * the verification.
+ */
+public class ChainVerifier {
+    private final BlockValidator blockValidator;
+    private final SignatureVerifier signatureVerifier;
+
+    public ChainVerifier(BlockValidator blockValidator, SignatureVerifier signatureVerifier) {
+        this.blockValidator = blockValidator;
+        this.signatureVerifier = signatureVerifier;
+    }
+
+    /**
+     * Verify a whole chain, from its first block to its tip.
+     *
+     * @param blocks blocks in chain order
+     * @return report of the verification; {@link Report#isValid()} tells
+     *         whether the chain can be adopted
+     */
+    public Report verify(List<Block> blocks) {
+        long start = System.nanoTime();
+        ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+        // Index of the first transaction of each block in the list above
+        int[] firstTransaction = new int[blocks.size()];
+        HashSet<Transaction> seen = new HashSet<Transaction>();
+
+        long now = TimeUtils.getNowAsLong();
+
+        for (int height = 0; height < blocks.size(); height++) {
+            Block block = blocks.get(height);
+            String rejection = checkBlock(blocks, height, seen, now);
+            if (rejection != null) {
+                return new Report(blocks.size(), transactions.size(), start, height, rejection);
+            }
+            firstTransaction[height] = transactions.size();
+            transactions.addAll(block.getTransactions());
+            seen.addAll(block.getTransactions());
+        }
+
+        int invalid = this.signatureVerifier.findInvalid(transactions);
+        if (invalid >= 0) {
+            int height = blocks.size() - 1;
+            while (firstTransaction[height] > invalid) {
+                height--;
+            }
+            return new Report(blocks.size(), transactions.size(), start, height,
+                "transaction " + (invalid - firstTransaction[height]) + " has a tampered signature");
+        }
+        return new Report(blocks.size(), transactions.size(), start, -1, null);
+    }
+
+    /**
+     * Header and body checks of one block against the blocks below it, with
+     * the rules of the {@link BlockValidator}.
+     *
+     * @param seen transactions of the blocks below
+     * @param now local time, in milliseconds
+     * @return rejection reason, or null if the block is valid
+     */
+    private String checkBlock(List<Block> blocks, int height, HashSet<Transaction> seen, long now) {
+        Block block = blocks.get(height);
+        Hash256 expectedPrevious = height == 0 ? Hash256.ZERO : blocks.get(height - 1).getHash();
+        if (!block.getPreviousHash().equals(expectedPrevious)) {
+            return height == 0 ? "first block does not start a chain" : "previous hash linkage failed";
+        }
+
+        // The header commits to the Merkle root computed from the decoded
+        // transactions, so a matching hash also covers the body
+        BlockHeader header = block.getHeader();
+        String rejection = BlockValidator.checkHeaderRules(header, block.getHash(), i -> blocks.get(i).getTimestamp(),
+            height, Blockchain.nextTargetBits(blocks, height), now);
+        if (rejection != null) {
+            return rejection;
+        }
+        return this.blockValidator.checkBody(block, header, seen::contains);
+    }
+
+    /**
+     * Outcome and throughput of a chain verification.
+     */
+    public static class Report {
+        private final int blockCount;
+        private final int transactionCount;
+        private final long elapsedNanos;
+        private final int failedHeight;
+        private final String rejection;
+
+        private Report(int blockCount, int transactionCount, long startNanos, int failedHeight, String rejection) {
+            this.blockCount = blockCount;
+            this.transactionCount = transactionCount;
+            this.elapsedNanos = Math.max(System.nanoTime() - startNanos, 1);
+            this.failedHeight = failedHeight;
+            this.rejection = rejection;
+        }
+
+        public boolean isValid() {return this.rejection == null;}
+        public String getRejection() {return this.rejection;}
+        public int getFailedHeight() {return this.failedHeight;}
+        public int getBlockCount() {return this.blockCount;}
+        public int getTransactionCount() {return this.transactionCount;}
+        public long getElapsedNanos() {return this.elapsedNanos;}
+
+        public double getBlocksPerSecond() {return this.blockCount / (this.elapsedNanos / 1e9);}
+        public double getTransactionsPerSecond() {return this.transactionCount / (this.elapsedNanos / 1e9);}
+
+        /**
+         * Log the outcome: throughput when the chain is valid, the failing
+         * block and reason otherwise.
+         */
+        public void log() {
+            if (isValid()) {
+                Logger.info(toString());
+            } else {
+                Logger.error(toString());
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (!isValid()) {
+                return "Chain verification failed at block " + this.failedHeight + " of " + this.blockCount + ": " + this.rejection + ".";
+            }
+            return String.format("Verified chain of %d blocks and %d transactions in %.1f ms (%.0f blocks/s, %.0f tx/s)",
+                this.blockCount, this.transactionCount, this.elapsedNanos / 1e6, getBlocksPerSecond(), getTransactionsPerSecond());
+        }
+    }
+}
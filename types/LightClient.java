@@ -0,0 +1,259 @@
+package p2pblockchain.types;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.Logger;
+import p2pblockchain.utils.TimeUtils;
+
+/**
+ * Light node state: block headers only, payments checked with Merkle
+ * proofs (simplified payment verification).
+ *
+ * Headers are fetched from one full node with {@code getHeaders} and each
+ * one is checked like a full node checks a header: linkage to the previous
+ * header, then the rules of {@link BlockValidator#checkHeaderRules}
+ * (timestamp, the target expected at its height and proof-of-work). A payment is
+ * then checked by asking the peer for the {@link MerkleProof} of its
+ * transaction and verifying it against the matching header. The peer cannot
+ * forge a proof, but it can hide a transaction, and the light node trusts
+ * that the full nodes checked the signatures and balances of mined blocks.
+ *
+ * A header is {@link BlockHeader#SIZE} bytes and a proof a few hundred, so
+ * a light node needs a small fraction of the memory and bandwidth of a full
+ * chain clone.
+ */
+public class LightClient {
+    private final P2PNode peer;
+    private final ArrayList<BlockHeader> headers = new ArrayList<BlockHeader>();
+    private final ArrayList<Hash256> hashes = new ArrayList<Hash256>();
+    private final HashMap<Hash256, Integer> heights = new HashMap<Hash256, Integer>();
+    private long bytesReceived = 0;
+
+    /**
+     * @param peer full node serving headers and proofs
+     */
+    public LightClient(P2PNode peer) {
+        this.peer = peer;
+    }
+
+    public synchronized int getHeight() {return this.headers.size();}
+    public synchronized long getBytesReceived() {return this.bytesReceived;}
+
+    /**
+     * Height of a block in the verified header chain.
+     *
+     * @param blockHash block hash
+     * @return height, or -1 if the block is not in the header chain
+     */
+    public synchronized int getHeight(Hash256 blockHash) {
+        Integer height = this.heights.get(blockHash);
+        return height == null ? -1 : height;
+    }
+
+    /**
+     * Fetch and verify the headers the peer has beyond our tip.
+     *
+     * Each request starts one header below our height, so the peer sends
+     * our tip header back first. If it does not match (the peer's chain was
+     * replaced by a clone, possibly a shorter one), the header chain is
+     * fetched again from the start.
+     *
+     * @return number of headers added, or -1 if the peer could not be
+     *         reached or sent an invalid header
+     */
+    public synchronized int syncHeaders() {
+        int added = 0;
+        boolean restarted = false;
+        try {
+            while (true) {
+                int from = Math.max(this.headers.size() - 1, 0);
+                byte[] batch = Base64Utils.decode(request(MessageType.GET_HEADERS + ", " + Base64Utils.encodeToString(Integer.toString(from))));
+                if (batch.length % BlockHeader.SIZE != 0) {
+                    Logger.error("Light client received a truncated header batch of " + batch.length + " bytes.");
+                    return -1;
+                }
+                int count = batch.length / BlockHeader.SIZE;
+                int first = 0;
+                if (!this.headers.isEmpty()) {
+                    if (count == 0 || !headerAt(batch, 0).toHash().equals(this.hashes.getLast())) {
+                        if (restarted) {
+                            Logger.error("Peer chain changed again while syncing headers from the start.");
+                            return -1;
+                        }
+                        Logger.warn("Peer chain no longer extends our headers, syncing headers from the start.");
+                        clear();
+                        restarted = true;
+                        added = 0;
+                        continue;
+                    }
+                    // Our tip, sent back
+                    first = 1;
+                }
+                for (int i = first; i < count; i++) {
+                    BlockHeader header = headerAt(batch, i);
+                    Hash256 hash = header.toHash();
+                    String rejection = checkNext(header, hash);
+                    if (rejection != null) {
+                        Logger.error("Light client rejected header " + this.headers.size() + ": " + rejection + ".");
+                        return -1;
+                    }
+                    append(header, hash);
+                    added++;
+                }
+                if (count < p2pblockchain.config.NetworkConfig.MAX_HEADERS_PER_REQUEST) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            Logger.error("Light client failed to sync headers from " + this.peer.toString() + ": " + e.getMessage());
+            return -1;
+        }
+        if (added > 0) {
+            Logger.info("Synced " + added + " headers from " + this.peer.toString() + ", height " + this.headers.size()
+                + " (" + this.headers.size() * BlockHeader.SIZE + " bytes of headers, " + this.bytesReceived + " bytes received in total)");
+        }
+        return added;
+    }
+
+    /**
+     * Check a transaction with a Merkle proof from the peer.
+     *
+     * @param transactionId id of the transaction ({@link Transaction#toHash()})
+     * @return the verified proof, or null if the transaction is unknown to
+     *         the peer or the proof does not match our headers
+     */
+    public MerkleProof verifyTransaction(Hash256 transactionId) {
+        MerkleProof proof;
+        try {
+            String response = request(MessageType.GET_MERKLE_PROOF + ", " + Base64Utils.encodeToString(transactionId.toHex()));
+            String json = new String(Base64Utils.decode(response), StandardCharsets.UTF_8);
+            if (!json.startsWith("{")) {
+                Logger.warn("Peer " + this.peer.toString() + " has no transaction " + transactionId + ".");
+                return null;
+            }
+            proof = MerkleProof.fromJson(new JsonObject(json));
+        } catch (Exception e) {
+            Logger.error("Light client failed to get a Merkle proof from " + this.peer.toString() + ": " + e.getMessage());
+            return null;
+        }
+        if (proof == null || !proof.getTransaction().toHash().equals(transactionId)) {
+            Logger.error("Peer sent a proof for another transaction than " + transactionId + ".");
+            return null;
+        }
+
+        // The block may be newer than our last sync
+        if (getHeight(proof.getBlockHash()) < 0) {
+            syncHeaders();
+        }
+        int height = getHeight(proof.getBlockHash());
+        if (height < 0) {
+            Logger.error("Merkle proof refers to block " + proof.getBlockHash() + ", which is not in our header chain.");
+            return null;
+        }
+        BlockHeader header;
+        synchronized (this) {
+            header = this.headers.get(height);
+        }
+        if (!proof.verify(header)) {
+            Logger.error("Merkle proof of transaction " + transactionId + " does not match the header of block " + height + ".");
+            return null;
+        }
+        return proof;
+    }
+
+    /**
+     * Snapshot of the light node state.
+     *
+     * @return JSON object with height, header bytes held and bytes received
+     */
+    public synchronized JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.put("peer", this.peer.toString());
+        json.put("height", this.headers.size());
+        json.put("tip", this.hashes.isEmpty() ? Hash256.ZERO.toHex() : this.hashes.getLast().toHex());
+        json.put("headerBytes", (long) this.headers.size() * BlockHeader.SIZE);
+        json.put("bytesReceived", this.bytesReceived);
+        return json;
+    }
+
+    /**
+     * Check a header against the tip of the verified header chain, with the
+     * header rules full nodes apply ({@link BlockValidator#checkHeaderRules}).
+     *
+     * @param header header following our tip
+     * @param hash hash of the header
+     * @return rejection reason, or null if the header extends the chain
+     */
+    private String checkNext(BlockHeader header, Hash256 hash) {
+        int height = this.headers.size();
+        Hash256 expectedPrevious = height == 0 ? Hash256.ZERO : this.hashes.getLast();
+        if (!header.getPreviousHash().equals(expectedPrevious)) {
+            return "previous hash linkage failed";
+        }
+        return BlockValidator.checkHeaderRules(header, hash, i -> this.headers.get(i).getTimestamp(), height, nextTargetBits(height), TimeUtils.getNowAsLong());
+    }
+
+    /**
+     * Target of the header at a given height, with the rule of
+     * {@link Blockchain#nextTargetBits(java.util.List, int)}.
+     */
+    private int nextTargetBits(int height) {
+        int interval = p2pblockchain.config.BlockchainConfig.DIFFICULTY_ADJUSTMENT_INTERVAL;
+        if (height == 0) {
+            return p2pblockchain.config.BlockchainConfig.INITIAL_TARGET_BITS;
+        }
+        BlockHeader last = this.headers.get(height - 1);
+        if (height % interval != 0) {
+            return last.getTargetBits();
+        }
+        return Blockchain.retargetBits(last.getTargetBits(), this.headers.get(height - interval).getTimestamp(), last.getTimestamp());
+    }
+
+    private static BlockHeader headerAt(byte[] batch, int index) {
+        return BlockHeader.fromBytes(Arrays.copyOfRange(batch, index * BlockHeader.SIZE, (index + 1) * BlockHeader.SIZE));
+    }
+
+    private void append(BlockHeader header, Hash256 hash) {
+        this.heights.put(hash, this.headers.size());
+        this.headers.add(header);
+        this.hashes.add(hash);
+    }
+
+    private void clear() {
+        this.headers.clear();
+        this.hashes.clear();
+        this.heights.clear();
+    }
+
+    /**
+     * Send one request line to the peer and return its Base64 response line.
+     */
+    private String request(String message) throws IOException {
+        try (Socket socket = new Socket(this.peer.getNodeAddress(), this.peer.getNodePort())) {
+            BufferedWriter socketOutput = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            BufferedReader socketInput = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            socketOutput.write(message + "\n");
+            socketOutput.flush();
+            String response = socketInput.readLine();
+            if (response == null) {
+                throw new IOException("connection closed by peer");
+            }
+            synchronized (this) {
+                this.bytesReceived += response.length() + 1;
+            }
+            return response;
+        }
+    }
+}
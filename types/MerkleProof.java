@@ -0,0 +1,144 @@
+package p2pblockchain.types;
+
+import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.JsonArray;
+import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.Logger;
+
+/**
+ * Proof that a transaction is included in a block.
+ *
+ * Holds the transaction, its leaf index in the block, the number of
+ * transactions of the block and the sibling path from
+ * {@link MerkleTree#getProof}. Folding the transaction id with the siblings
+ * (left or right according to the bits of the index) gives the Merkle root,
+ * so a light node checks the proof against a header it already verified,
+ * without the rest of the block. A proof of a block with n transactions
+ * carries ceil(log2 n) hashes.
+ *
+ * As the last node of an odd level is paired with itself, the padding copy
+ * of a last leaf gives the same root as the leaf (CVE-2012-2459). A proof is
+ * therefore only valid when its index is below the transaction count, and a
+ * sibling equals its node exactly where the tree of that many leaves pairs
+ * a node with itself. A block never holds the same transaction twice, so a
+ * peer understating or overstating the count cannot pass off the padding
+ * copy either.
+ */
+public class MerkleProof {
+    private final Hash256 blockHash;
+    private final int index;
+    private final int leafCount;
+    private final Transaction transaction;
+    private final Hash256[] siblings;
+
+    /**
+     * @param blockHash hash of the block holding the transaction
+     * @param index leaf index of the transaction in the block
+     * @param leafCount number of transactions of the block
+     * @param transaction proven transaction
+     * @param siblings sibling path, from the leaf level up
+     */
+    public MerkleProof(Hash256 blockHash, int index, int leafCount, Transaction transaction, Hash256[] siblings) {
+        this.blockHash = blockHash;
+        this.index = index;
+        this.leafCount = leafCount;
+        this.transaction = transaction;
+        this.siblings = siblings;
+    }
+
+    public Hash256 getBlockHash() {return this.blockHash;}
+    public int getIndex() {return this.index;}
+    public int getLeafCount() {return this.leafCount;}
+    public Transaction getTransaction() {return this.transaction;}
+    public Hash256[] getSiblings() {return this.siblings.clone();}
+
+    /**
+     * Merkle root implied by the transaction and the sibling path.
+     *
+     * @return computed root, or null if the index is not a leaf of a tree
+     *         of {@code leafCount} leaves or the path does not fit that tree
+     */
+    public Hash256 computeRoot() {
+        if (this.index < 0 || this.index >= this.leafCount) {
+            return null;
+        }
+        Hash256 node = this.transaction.toHash();
+        int position = this.index;
+        int levelSize = this.leafCount;
+        int level = 0;
+        for (; levelSize > 1; level++) {
+            if (level >= this.siblings.length) {
+                return null;
+            }
+            Hash256 sibling = this.siblings[level];
+            boolean pairedWithItself = position == levelSize - 1 && (position & 1) == 0;
+            if (sibling.equals(node) != pairedWithItself) {
+                return null;
+            }
+            node = (position & 1) == 0 ? MerkleTree.parentOf(node, sibling) : MerkleTree.parentOf(sibling, node);
+            position >>= 1;
+            levelSize = (levelSize + 1) >> 1;
+        }
+        return level == this.siblings.length ? node : null;
+    }
+
+    /**
+     * Check the proof against a verified header.
+     *
+     * @param header header of the block the proof refers to
+     * @return true if the header is that block and its Merkle root matches
+     */
+    public boolean verify(BlockHeader header) {
+        return header.toHash().equals(this.blockHash) && header.getMerkleRoot().equals(computeRoot());
+    }
+
+    /**
+     * Serialize this proof to JSON.
+     *
+     * @return JSON representation of the proof
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.put("blockHash", this.blockHash.toHex());
+        json.put("index", this.index);
+        json.put("leafCount", this.leafCount);
+        json.put("transaction", this.transaction.toJson());
+        JsonArray siblingsJson = new JsonArray();
+        for (Hash256 sibling : this.siblings) {
+            siblingsJson.add(sibling.toHex());
+        }
+        json.put("siblings", siblingsJson);
+        return json;
+    }
+
+    public String toBase64() {
+        return Base64Utils.encodeToString(this.toJson().toString());
+    }
+
+    /**
+     * Decode a proof from its JSON representation.
+     *
+     * @param json JSON produced by {@link #toJson()}
+     * @return decoded proof, or null if the JSON is not a valid proof
+     */
+    public static MerkleProof fromJson(JsonObject json) {
+        try {
+            JsonArray siblingsJson = json.getJsonArray("siblings");
+            Hash256[] siblings = new Hash256[siblingsJson.size()];
+            for (int i = 0; i < siblings.length; i++) {
+                siblings[i] = Hash256.fromHex(siblingsJson.getString(i));
+            }
+            return new MerkleProof(
+                Hash256.fromHex(json.getString("blockHash")),
+                json.getInt("index"),
+                json.getInt("leafCount"),
+                Transaction.fromJson(json.getJsonObject("transaction")),
+                siblings
+            );
+        } catch (RuntimeException e) {
+            Logger.error("Failed to decode Merkle proof: " + e.getMessage());
+            return null;
+        }
+    }
+}
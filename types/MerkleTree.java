@@ -1,108 +1,295 @@
 package p2pblockchain.types;
 
 import java.util.ArrayList;
+import java.util.List;
 
+import p2pblockchain.utils.Hash256;
 import p2pblockchain.utils.HashUtils;
-import p2pblockchain.utils.Logger;
+import p2pblockchain.utils.Sha3Digest;
 
 /**
- * Simple Merkle tree implementation over a list of transactions.
+ * Incremental Merkle tree over a list of transactions.
  *
- * The class builds a binary Merkle tree using transaction hashes and exposes
- * the Merkle root.
- * When the number of leaves is odd, the last leaf is duplicated to form a pair
- * (standard Merkle tree padding technique).
+ * The tree is a binary Merkle tree over the transaction hashes. When a level
+ * has an odd number of nodes, its last node is paired with itself (standard
+ * Merkle tree padding technique). A parent node is the hash of the hex forms
+ * of its children concatenated, and the root of an empty tree is the hash of
+ * an empty string.
+ *
+ * All nodes are raw 32-byte digests in one flat array, level by level with
+ * the leaves first. A level has room for {@code capacity >> level} nodes,
+ * where the leaf capacity is a power of two that doubles when full. The
+ * tree follows the transaction list of its block. Changes only write the
+ * leaves and remember the first changed one; the parents are recomputed
+ * once, when the root or a proof is next requested:
+ *
+ * <ul>
+ *   <li>A single {@link #append} or {@link #replace} re-hashes the path from
+ *       the leaf to the root only, O(log n) hashes.</li>
+ *   <li>Changes from a given leaf on (a batch of appends while a block is
+ *       assembled or decoded, a {@link #remove} shifting the following
+ *       leaves down) re-hash the nodes right of that leaf on each level, so
+ *       building a tree of n leaves costs about n hashes in total.</li>
+ * </ul>
+ *
+ * {@link #getProof} returns the sibling path of a leaf, which is enough
+ * for a light node holding only the header to check that a transaction is
+ * in the block (see {@link MerkleProof}).
+ *
+ * A tree belongs to one block. Its methods are synchronized, as blocks of
+ * the chain are read by several threads and reading the root may complete
+ * the deferred re-hashing.
  */
 public class MerkleTree {
+    private static final Hash256 EMPTY_ROOT = HashUtils.hash256("");
+
+    private byte[] nodes;
+    private int capacity;
+    private int leafCount;
+    private Hash256 root = EMPTY_ROOT;
+    // First leaf changed since the parents were last computed (NONE if up
+    // to date), and whether nodes right of its path changed too
+    private int dirtyFrom = NONE;
+    private boolean dirtyToEnd = false;
+    private static final int NONE = Integer.MAX_VALUE;
+
     /**
-     * Internal node used to represent tree structure.
+     * Build a Merkle tree from the provided transaction list. A null or
+     * empty list gives an empty tree, which is a valid state (e.g. a
+     * genesis block or a block without transactions).
+     *
+     * @param transactions List of transactions to include in the tree
      */
-    private static class MerkleNode {
-        private String hash;
-        private MerkleNode left;
-        private MerkleNode right;
-        
-        MerkleNode(String hash) {
-            this.hash = hash;
+    public MerkleTree(List<Transaction> transactions) {
+        int count = transactions == null ? 0 : transactions.size();
+        this.capacity = capacityFor(count);
+        this.nodes = new byte[slotCount(this.capacity) * Hash256.SIZE];
+        for (int i = 0; i < count; i++) {
+            transactions.get(i).toHash().writeTo(this.nodes, i * Hash256.SIZE);
         }
-        
-        MerkleNode(String hash, MerkleNode left, MerkleNode right) {
-            this.hash = hash;
-            this.left = left;
-            this.right = right;
+        this.leafCount = count;
+        markDirty(0, true);
+    }
+
+    /**
+     * Create an independent copy of another tree.
+     *
+     * @param other tree to copy
+     */
+    public MerkleTree(MerkleTree other) {
+        synchronized (other) {
+            this.nodes = other.nodes.clone();
+            this.capacity = other.capacity;
+            this.leafCount = other.leafCount;
+            this.root = other.root;
+            this.dirtyFrom = other.dirtyFrom;
+            this.dirtyToEnd = other.dirtyToEnd;
         }
     }
 
-    private MerkleNode root;
+    public synchronized int size() {return this.leafCount;}
 
     /**
-     * Build a Merkle tree from the provided transaction list. If the list is
-     * empty or null, the constructor logs an error and leaves the root null.
+     * Add a transaction as the last leaf.
      *
-     * @param transactions List of transactions to include in the tree
+     * @param transaction transaction to add
      */
-    public MerkleTree(ArrayList<Transaction> transactions) {
-        // If transactions are null/empty we keep root == null. This is a
-        // valid state: getMerkleRoot() will return the hash of an empty
-        // string. Avoid logging an error in normal operation (e.g. genesis
-        // block or blocks without transactions).
-        if (transactions == null || transactions.isEmpty()) {
-            this.root = null;
-            return;
+    public synchronized void append(Transaction transaction) {
+        if (this.leafCount == this.capacity) {
+            grow();
         }
+        transaction.toHash().writeTo(this.nodes, this.leafCount * Hash256.SIZE);
+        this.leafCount++;
+        // The new leaf is the last one: nothing lies right of its path
+        markDirty(this.leafCount - 1, true);
+    }
 
-        try {
-			this.root = buildTree(transactions);
-		} catch (Exception e) {
-            Logger.error("Cannot build Merkle Tree: " + e.getMessage());
-            this.root = null;
-		}
+    /**
+     * Replace the transaction of a leaf.
+     *
+     * @param index leaf index
+     * @param transaction new transaction for that leaf
+     * @throws IndexOutOfBoundsException if there is no such leaf
+     */
+    public synchronized void replace(int index, Transaction transaction) {
+        checkIndex(index);
+        transaction.toHash().writeTo(this.nodes, index * Hash256.SIZE);
+        markDirty(index, false);
     }
 
     /**
-     * Recursively build the Merkle tree levels from the leaf transaction hashes.
+     * Remove a leaf; the following leaves move down by one, like in the
+     * transaction list.
      *
-     * @param transactions Input transactions
-     * @return root node of the built tree
-     * @throws Exception when the input list is null or empty
+     * @param index leaf index
+     * @throws IndexOutOfBoundsException if there is no such leaf
      */
-    private MerkleNode buildTree(ArrayList<Transaction> transactions) throws Exception {
-        if (transactions == null || transactions.isEmpty()) {
-            throw new Exception("No transactions to build Merkle Tree");
-        }
+    public synchronized void remove(int index) {
+        checkIndex(index);
+        System.arraycopy(this.nodes, (index + 1) * Hash256.SIZE, this.nodes, index * Hash256.SIZE,
+            (this.leafCount - index - 1) * Hash256.SIZE);
+        this.leafCount--;
+        markDirty(index, true);
+    }
 
-        ArrayList<MerkleNode> currentLevel = new ArrayList<MerkleNode>();
-        for (Transaction tx : transactions) {
-            currentLevel.add(new MerkleNode(tx.toHash()));
+    /**
+     * Return the Merkle root hash. If the tree is empty, returns the hash of
+     * an empty string.
+     *
+     * @return merkle root hash
+     */
+    public synchronized Hash256 getMerkleRoot() {
+        update();
+        return this.root;
+    }
+
+    /**
+     * Sibling path of a leaf, from the leaf level up to the children of the
+     * root. A node paired with itself (last node of an odd level) is its
+     * own sibling.
+     *
+     * @param index leaf index
+     * @return sibling hashes, empty for a tree of a single leaf
+     * @throws IndexOutOfBoundsException if there is no such leaf
+     */
+    public synchronized Hash256[] getProof(int index) {
+        checkIndex(index);
+        update();
+        ArrayList<Hash256> siblings = new ArrayList<Hash256>();
+        int position = index;
+        for (int level = 0; levelSize(level) > 1; level++) {
+            int sibling = position ^ 1;
+            if (sibling >= levelSize(level)) {
+                sibling = position;
+            }
+            siblings.add(Hash256.of(this.nodes, (levelOffset(level) + sibling) * Hash256.SIZE));
+            position >>= 1;
         }
+        return siblings.toArray(new Hash256[0]);
+    }
 
-        while (currentLevel.size() > 1) {
-            ArrayList<MerkleNode> nextLevel = new ArrayList<MerkleNode>();
-            for (int i = 0; i < currentLevel.size(); i += 2) {
-                MerkleNode left = currentLevel.get(i);
-                MerkleNode right = (i + 1 < currentLevel.size()) ? currentLevel.get(i + 1) : left;
+    /**
+     * Hash of a parent node: hex(left) + hex(right), as ASCII.
+     *
+     * @param left left child
+     * @param right right child
+     * @return parent hash
+     */
+    public static Hash256 parentOf(Hash256 left, Hash256 right) {
+        byte[] combined = new byte[4 * Hash256.SIZE];
+        left.writeHexTo(combined, 0);
+        right.writeHexTo(combined, 2 * Hash256.SIZE);
+        return Hash256.of(HashUtils.sha3().digest(combined));
+    }
 
-                String combined = left.hash + right.hash;
-                String parentHash = HashUtils.hashString(combined);
-                nextLevel.add(new MerkleNode(parentHash, left, right));
-            }
-            currentLevel = nextLevel;
+    /**
+     * Remember that a leaf changed. Successive changes of the same leaf keep
+     * a path-only update; any other combination re-hashes everything right
+     * of the first changed leaf.
+     *
+     * @param leafIndex changed leaf
+     * @param toEnd true if the leaves right of it changed (or moved) too
+     */
+    private void markDirty(int leafIndex, boolean toEnd) {
+        if (this.dirtyFrom == NONE) {
+            this.dirtyFrom = leafIndex;
+            this.dirtyToEnd = toEnd;
+        } else if (leafIndex != this.dirtyFrom || toEnd != this.dirtyToEnd) {
+            this.dirtyFrom = Math.min(this.dirtyFrom, leafIndex);
+            this.dirtyToEnd = true;
         }
+    }
 
-        return currentLevel.get(0);
+    /**
+     * Recompute the parents changed since the last update, if any.
+     */
+    private void update() {
+        if (this.dirtyFrom != NONE) {
+            rehash(Math.min(this.dirtyFrom, Math.max(0, this.leafCount - 1)), this.dirtyToEnd);
+            this.dirtyFrom = NONE;
+            this.dirtyToEnd = false;
+        }
     }
 
     /**
-     * Return the Merkle root hash. If the tree is empty, returns the hash of
-     * an empty string.
+     * Recompute the parents of a leaf up to the root, and optionally every
+     * node to their right on each level.
      *
-     * @return merkle root hash (hex string)
+     * @param leafIndex first changed leaf
+     * @param toEnd true to also recompute the nodes right of the path
      */
-    public String getMerkleRoot() {
-        if (this.root == null) {
-            return HashUtils.hashString("");
-        } else {
-            return root.hash;
+    private void rehash(int leafIndex, boolean toEnd) {
+        if (this.leafCount == 0) {
+            this.root = EMPTY_ROOT;
+            return;
         }
+
+        Sha3Digest digest = HashUtils.sha3();
+        byte[] combined = new byte[4 * Hash256.SIZE];
+        int level = 0;
+        while (levelSize(level) > 1) {
+            int childCount = levelSize(level);
+            int childBase = levelOffset(level);
+            int parentBase = levelOffset(level + 1);
+            int first = leafIndex >> (level + 1);
+            int last = toEnd ? levelSize(level + 1) - 1 : first;
+            for (int parent = first; parent <= last; parent++) {
+                int left = 2 * parent;
+                int right = left + 1 < childCount ? left + 1 : left;
+
+                // hex(left) + hex(right), as ASCII
+                Hash256.writeHex(this.nodes, (childBase + left) * Hash256.SIZE, combined, 0);
+                Hash256.writeHex(this.nodes, (childBase + right) * Hash256.SIZE, combined, 2 * Hash256.SIZE);
+                digest.reset();
+                digest.update(combined);
+                digest.digest(this.nodes, (parentBase + parent) * Hash256.SIZE);
+            }
+            level++;
+        }
+        this.root = Hash256.of(this.nodes, levelOffset(level) * Hash256.SIZE);
+    }
+
+    /**
+     * Double the leaf capacity, moving every level to its new position.
+     */
+    private void grow() {
+        int newCapacity = this.capacity * 2;
+        byte[] newNodes = new byte[slotCount(newCapacity) * Hash256.SIZE];
+        for (int level = 0; level == 0 || levelSize(level - 1) > 1; level++) {
+            int from = levelOffset(this.capacity, level);
+            int to = levelOffset(newCapacity, level);
+            System.arraycopy(this.nodes, from * Hash256.SIZE, newNodes, to * Hash256.SIZE, levelSize(level) * Hash256.SIZE);
+        }
+        this.nodes = newNodes;
+        this.capacity = newCapacity;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.leafCount) {
+            throw new IndexOutOfBoundsException("Merkle leaf " + index + " out of bounds for " + this.leafCount + " leaves");
+        }
+    }
+
+    /** Number of nodes on a level: the leaf count halved, rounded up, per level. */
+    private int levelSize(int level) {
+        return ((this.leafCount - 1) >> level) + 1;
+    }
+
+    /** Slot of the first node of a level. */
+    private int levelOffset(int level) {
+        return levelOffset(this.capacity, level);
+    }
+
+    private static int levelOffset(int capacity, int level) {
+        // capacity + capacity/2 + ... over the levels below
+        return 2 * (capacity - (capacity >> level));
+    }
+
+    private static int slotCount(int capacity) {
+        return 2 * capacity - 1;
+    }
+
+    private static int capacityFor(int leafCount) {
+        return leafCount <= 1 ? 1 : Integer.highestOneBit(leafCount - 1) << 1;
     }
-}
\ No newline at end of file
+}
@@ -39,6 +39,22 @@ public class MessageType {
     // Expected: stopMining
     // Response: b64(Ok)
 
+    public static String GET_MINING_STATS = "getMiningStats";
+    // Expected: getMiningStats
+    // Response: b64(JSON of mining counters)
+
+    public static String GET_WORK = "getWork";
+    // Expected: getWork, b64(minerId)
+    // Response: b64(JSON {workId, header (hex), targetBits, shareTargetBits}), b64(NoWork)
+
+    public static String GET_TIP = "getTip";
+    // Expected: getTip
+    // Response: b64(hash of the chain tip in hex)
+
+    public static String SUBMIT_WORK = "submitWork";
+    // Expected: submitWork, b64(JSON {minerId, workId, nonce, timestamp})
+    // Response: b64(BLOCK), b64(SHARE), b64(STALE), b64(INVALID)
+
 
     // Inter-machine Commands
 
@@ -57,10 +73,34 @@ public class MessageType {
     
     public static String CLONE_CHAIN = "cloneBlockchain";
     // Expected: cloneBlockchain
-    // Response: b64(blockchain.toBase64())
+    // Response: b64(blockchain.toBase64()), or b64(deflate(blockchain JSON))
+    //           after useCompressedExchange
+
+    public static String GET_HEADERS = "getHeaders";
+    // Expected: getHeaders, b64(start height)
+    // Response: b64(binary headers from that height, BlockHeader.SIZE bytes
+    //           each, at most NetworkConfig.MAX_HEADERS_PER_REQUEST),
+    //           b64(Error) for a negative or non-numeric height
+
+    public static String GET_MERKLE_PROOF = "getMerkleProof";
+    // Expected: getMerkleProof, b64(transaction id in hex)
+    // Response: b64(merkleProof.toJson), b64(NotFound), b64(Error) for an
+    //           invalid id
 
     public static String GET_LOCAL_WALLETS = "getLocalWallets";
     // Expected: getLocalWallets
     // Response: b64(JSON array of wallet info)
 
+    public static String USE_BINARY_CODEC = "useBinaryCodec";
+    // Expected: useBinaryCodec
+    // Response: b64(Ok)
+    // Afterwards, block, transaction and node payloads on this connection are
+    // b64(binary) (see toBytes()) instead of b64(JSON)
+
+    public static String USE_COMPRESSED_EXCHANGE = "useCompressedExchange";
+    // Expected: useCompressedExchange
+    // Response: b64(Ok)
+    // Afterwards, cloneBlockchain on this connection answers with the chain
+    // JSON compressed by CompressionUtils
+
 }
@@ -0,0 +1,232 @@
+package p2pblockchain.types;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import p2pblockchain.utils.DifficultyUtils;
+import p2pblockchain.utils.Logger;
+import p2pblockchain.utils.NonceGenerator;
+import p2pblockchain.utils.Sha3Digest;
+
+/**
+ * Multi-threaded proof-of-work engine.
+ *
+ * Workers claim disjoint sequential nonce ranges from a per-job
+ * {@link NonceGenerator}, which rolls the timestamp forward once the nonce
+ * space is exhausted, so no attempt is repeated. The fixed part of the block
+ * header is absorbed once into a {@link MiningTemplate}; each worker owns its
+ * own SHA3 engine and scratch buffers, so the hot loop only touches shared
+ * state once per range. The first worker to find a hash at or below the
+ * target publishes its header and the others stop.
+ *
+ * A running job can be aborted (e.g. when the chain tip changes); hashes
+ * spent on aborted or orphaned work are counted as stale.
+ */
+public class Miner {
+    private final int threadCount;
+    private final ExecutorService workers;
+    private final AtomicLong staleHashes = new AtomicLong();
+    // Per-worker attempts and time spent hashing, updated once per nonce range
+    private final AtomicLongArray workerAttempts;
+    private final AtomicLongArray workerBusyNanos;
+    private volatile MiningJob currentJob = null;
+    private volatile long lastJobAttempts = 0;
+
+    /**
+     * Create a mining engine backed by a fixed pool of daemon worker threads.
+     *
+     * @param threadCount number of worker threads (at least 1)
+     */
+    public Miner(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        this.workerAttempts = new AtomicLongArray(this.threadCount);
+        this.workerBusyNanos = new AtomicLongArray(this.threadCount);
+        this.workers = Executors.newFixedThreadPool(this.threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "miner-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreadCount() {return this.threadCount;}
+    public long getLastJobAttempts() {return this.lastJobAttempts;}
+    public long getStaleHashes() {return this.staleHashes.get();}
+
+    /**
+     * Total hash attempts made by all workers since the miner was created.
+     */
+    public long getTotalAttempts() {
+        long total = 0;
+        for (int i = 0; i < this.threadCount; i++) {
+            total += this.workerAttempts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Hash rate of each worker, measured over the time it actually spent
+     * hashing (idle time between jobs is not counted).
+     *
+     * @return hashes per second, indexed by worker
+     */
+    public double[] getWorkerHashrates() {
+        double[] rates = new double[this.threadCount];
+        for (int i = 0; i < this.threadCount; i++) {
+            long busyNanos = this.workerBusyNanos.get(i);
+            rates[i] = busyNanos == 0 ? 0 : this.workerAttempts.get(i) * 1e9 / busyNanos;
+        }
+        return rates;
+    }
+
+    /**
+     * State shared by the workers of a single mining job.
+     */
+    private static class MiningJob {
+        private final AtomicReference<BlockHeader> solution = new AtomicReference<BlockHeader>();
+        private final LongAdder attempts = new LongAdder();
+        private volatile String abortReason = null;
+
+        private boolean isRunning() {
+            return this.solution.get() == null && this.abortReason == null;
+        }
+    }
+
+    /**
+     * Perform proof-of-work on the given block. The block itself is not
+     * modified; the returned block is a copy with nonce, timestamp and hash
+     * set to the winning values.
+     *
+     * The job can be cancelled from another thread with {@link #abort}. The
+     * {@code isStale} check is evaluated once the job is visible to
+     * {@link #abort}, so a change that happened while the template was being
+     * built is not missed.
+     *
+     * @param template   block with all content except nonce/timestamp/hash set
+     * @param targetBits compact proof-of-work target (see DifficultyUtils)
+     * @param isStale    returns true if the template is already outdated
+     * @return the mined block, or null if mining failed or was aborted
+     */
+    public Block mine(Block template, int targetBits, BooleanSupplier isStale) {
+        BlockHeader solution = mine(new MiningTemplate(template), DifficultyUtils.compactToTarget(targetBits), isStale);
+        if (solution == null) {
+            return null;
+        }
+        Block block = new Block(template);
+        block.setNonce(solution.getNonce());
+        block.setTimestamp(solution.getTimestamp());
+        block.setHash(solution.toHash());
+        return block;
+    }
+
+    /**
+     * Perform proof-of-work on a bare block header against a target other
+     * than its own, e.g. work handed out by a node to an external miner
+     * process, searched against the share target. The header is hashed
+     * unchanged (its targetBits included), so a solution rebuilt by the node
+     * from its template has the same hash.
+     *
+     * @param header  header with all fields except nonce/timestamp set
+     * @param target  256-bit target a solution must meet (see DifficultyUtils)
+     * @param isStale returns true if the header is already outdated
+     * @return the solved header, or null if mining failed or was aborted
+     */
+    public BlockHeader mine(BlockHeader header, byte[] target, BooleanSupplier isStale) {
+        return mine(new MiningTemplate(header), target, isStale);
+    }
+
+    private BlockHeader mine(MiningTemplate miningTemplate, byte[] target, BooleanSupplier isStale) {
+        MiningJob job = new MiningJob();
+        this.currentJob = job;
+        if (isStale.getAsBoolean()) {
+            job.abortReason = "template outdated before start";
+        }
+
+        NonceGenerator nonceGenerator = new NonceGenerator();
+        ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+        for (int i = 0; i < this.threadCount; i++) {
+            int worker = i;
+            tasks.add(this.workers.submit(() -> grind(worker, job, miningTemplate, nonceGenerator, target)));
+        }
+
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (Exception e) {
+                Logger.error("Mining worker failed: " + e.getMessage());
+            }
+        }
+        this.currentJob = null;
+        this.lastJobAttempts = job.attempts.sum();
+
+        BlockHeader solution = job.solution.get();
+        if (solution == null && job.abortReason != null) {
+            recordStaleHashes(this.lastJobAttempts);
+            Logger.info("Mining aborted (" + job.abortReason + ") after " + this.lastJobAttempts + " hashes. Total stale hashes: " + getStaleHashes());
+        }
+        return solution;
+    }
+
+    /**
+     * Cancel the running mining job, if any. Workers notice the request on
+     * their next attempt and {@link #mine} returns null.
+     *
+     * @param reason short description for the logs
+     */
+    public void abort(String reason) {
+        MiningJob job = this.currentJob;
+        if (job != null && job.solution.get() == null) {
+            job.abortReason = reason;
+        }
+    }
+
+    /**
+     * Account hashes spent on work that can no longer produce a block on the
+     * current chain tip.
+     *
+     * @param hashes number of wasted hash attempts
+     */
+    public void recordStaleHashes(long hashes) {
+        this.staleHashes.addAndGet(hashes);
+    }
+
+    /**
+     * Worker loop: claim nonce ranges and iterate them until a valid hash is
+     * found by this or another worker, or the job is aborted.
+     */
+    private void grind(int worker, MiningJob job, MiningTemplate miningTemplate, NonceGenerator nonceGenerator, byte[] target) {
+        Sha3Digest digest = new Sha3Digest();
+        byte[] workBuffer = miningTemplate.newWorkBuffer();
+        byte[] hash = new byte[Sha3Digest.DIGEST_SIZE];
+
+        long attempts = 0;
+        boolean found = false;
+        while (!found && job.isRunning()) {
+            NonceGenerator.NonceRange range = nonceGenerator.nextRange();
+            long timestamp = range.getTimestamp();
+            int nonce = range.getFirstNonce();
+            long rangeStart = System.nanoTime();
+            int rangeAttempts = 0;
+            while (rangeAttempts < range.getSize() && job.isRunning()) {
+                miningTemplate.hash(digest, workBuffer, nonce, timestamp, hash);
+                rangeAttempts++;
+                if (DifficultyUtils.meetsTarget(hash, target)) {
+                    job.solution.compareAndSet(null, miningTemplate.solve(nonce, timestamp));
+                    found = true;
+                    break;
+                }
+                nonce++;
+            }
+            attempts += rangeAttempts;
+            this.workerAttempts.addAndGet(worker, rangeAttempts);
+            this.workerBusyNanos.addAndGet(worker, System.nanoTime() - rangeStart);
+        }
+        job.attempts.add(attempts);
+    }
+}
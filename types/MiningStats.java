@@ -0,0 +1,84 @@
+package p2pblockchain.types;
+
+import p2pblockchain.utils.JsonArray;
+import p2pblockchain.utils.JsonObject;
+
+/**
+ * Mining telemetry of a node: blocks found, orphaned blocks, aborted jobs
+ * and time taken to find each block. Hash counters live in the {@link Miner}
+ * and are combined with these by {@link #toJson(Miner)}.
+ *
+ * Counters are updated by the mining thread and read by the network and
+ * console threads.
+ */
+public class MiningStats {
+    private long blocksFound = 0;
+    private long orphanedBlocks = 0;
+    private long abortedJobs = 0;
+    private long lastBlockMillis = 0;
+    private long totalBlockMillis = 0;
+    private long fastestBlockMillis = Long.MAX_VALUE;
+    private long slowestBlockMillis = 0;
+
+    /**
+     * Record a block found by the local miner.
+     *
+     * @param millis time taken by the mining job that found it
+     */
+    public synchronized void recordBlockFound(long millis) {
+        this.blocksFound++;
+        this.lastBlockMillis = millis;
+        this.totalBlockMillis += millis;
+        this.fastestBlockMillis = Math.min(this.fastestBlockMillis, millis);
+        this.slowestBlockMillis = Math.max(this.slowestBlockMillis, millis);
+    }
+
+    /**
+     * Record a mined block that could not join the chain because the tip
+     * moved while it was being mined. It was also counted as found.
+     */
+    public synchronized void recordOrphan() {
+        this.orphanedBlocks++;
+    }
+
+    /**
+     * Record a mining job that ended without a block.
+     */
+    public synchronized void recordAbortedJob() {
+        this.abortedJobs++;
+    }
+
+    public synchronized long getBlocksFound() {return this.blocksFound;}
+    public synchronized long getOrphanedBlocks() {return this.orphanedBlocks;}
+    public synchronized long getAbortedJobs() {return this.abortedJobs;}
+
+    /**
+     * Snapshot of all mining counters.
+     *
+     * @param miner miner providing the hash counters
+     * @return JSON object with block counters, timings and hash rates
+     */
+    public synchronized JsonObject toJson(Miner miner) {
+        JsonObject json = new JsonObject();
+        json.put("blocksFound", this.blocksFound);
+        json.put("orphanedBlocks", this.orphanedBlocks);
+        json.put("abortedJobs", this.abortedJobs);
+        json.put("lastBlockMillis", this.lastBlockMillis);
+        json.put("averageBlockMillis", this.blocksFound == 0 ? 0 : this.totalBlockMillis / this.blocksFound);
+        json.put("fastestBlockMillis", this.blocksFound == 0 ? 0 : this.fastestBlockMillis);
+        json.put("slowestBlockMillis", this.slowestBlockMillis);
+
+        json.put("threads", miner.getThreadCount());
+        json.put("totalAttempts", miner.getTotalAttempts());
+        json.put("staleHashes", miner.getStaleHashes());
+        JsonArray workerRates = new JsonArray();
+        double totalRate = 0;
+        for (double rate : miner.getWorkerHashrates()) {
+            workerRates.add(Math.round(rate));
+            totalRate += rate;
+        }
+        json.put("workerHashrates", workerRates);
+        json.put("hashrate", Math.round(totalRate));
+        return json;
+    }
+}
@@ -0,0 +1,102 @@
+package p2pblockchain.types;
+
+import p2pblockchain.utils.Sha3Digest;
+
+/**
+ * Pre-absorbed block header used by the proof-of-work loop.
+ *
+ * The block hash is the hash of its fixed-size {@link BlockHeader}. Only the
+ * timestamp and nonce change between attempts, and they are the last fields
+ * of the header. Everything before them is absorbed once into a SHA3
+ * midstate; each attempt restores that state, absorbs the 12 changing bytes
+ * and finishes the hash. The cost per attempt is the same whatever the
+ * number of transactions, and nothing is allocated.
+ *
+ * A template is immutable and can be shared by all mining workers; each
+ * worker hashes with its own digest and buffers.
+ */
+public class MiningTemplate {
+    public static final int SUFFIX_SIZE = BlockHeader.SIZE - BlockHeader.TIMESTAMP_OFFSET;
+
+    private final BlockHeader header;
+    private final Sha3Digest midstate = new Sha3Digest();
+
+    /**
+     * Absorb the fixed part of the header of the given block once.
+     *
+     * @param block block with all content except nonce/timestamp set
+     */
+    public MiningTemplate(Block block) {
+        this(block.getHeader());
+    }
+
+    /**
+     * Absorb the fixed part of the given header once.
+     *
+     * @param header header whose nonce/timestamp will be searched
+     */
+    public MiningTemplate(BlockHeader header) {
+        this.header = header;
+        this.midstate.update(header.toBytes(), 0, BlockHeader.TIMESTAMP_OFFSET);
+    }
+
+    public int getTargetBits() {return this.header.getTargetBits();}
+
+    /**
+     * Build the header corresponding to a successful attempt.
+     *
+     * @param nonce     winning nonce
+     * @param timestamp winning timestamp
+     * @return copy of the template header with nonce and timestamp set
+     */
+    public BlockHeader solve(int nonce, long timestamp) {
+        return new BlockHeader(
+            this.header.getVersion(),
+            this.header.getPreviousHash(),
+            this.header.getMerkleRoot(),
+            this.header.getCoinbaseHash(),
+            this.header.getTargetBits(),
+            timestamp,
+            nonce
+        );
+    }
+
+    /**
+     * Create a worker-owned buffer for the timestamp and nonce fields.
+     *
+     * @return buffer that may be passed to {@link #hash}
+     */
+    public byte[] newWorkBuffer() {
+        return new byte[SUFFIX_SIZE];
+    }
+
+    /**
+     * Hash one proof-of-work attempt.
+     *
+     * @param digest     caller-owned digest (its state is overwritten)
+     * @param workBuffer caller-owned buffer from {@link #newWorkBuffer()}
+     * @param nonce      nonce to try
+     * @param timestamp  timestamp to try
+     * @param output     receives the {@link Sha3Digest#DIGEST_SIZE}-byte
+     *                   digest, identical to hashing the block header
+     */
+    public void hash(Sha3Digest digest, byte[] workBuffer, int nonce, long timestamp, byte[] output) {
+        writeLong(workBuffer, 0, timestamp);
+        writeInt(workBuffer, BlockHeader.NONCE_OFFSET - BlockHeader.TIMESTAMP_OFFSET, nonce);
+        digest.restore(this.midstate);
+        digest.update(workBuffer, 0, SUFFIX_SIZE);
+        digest.digest(output, 0);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(byte[] buffer, int offset, long value) {
+        writeInt(buffer, offset, (int) (value >>> 32));
+        writeInt(buffer, offset + 4, (int) value);
+    }
+}
@@ -1,10 +1,15 @@
 package p2pblockchain.types;
 
+import java.io.IOException;
 import java.net.Socket;
 
 import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.BinaryReader;
+import p2pblockchain.utils.BinaryWriter;
 import p2pblockchain.utils.HashUtils;
 import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.JsonReader;
+import p2pblockchain.utils.JsonWriter;
 import p2pblockchain.utils.Logger;
 
 /**
@@ -15,6 +20,8 @@ public class P2PNode implements AutoCloseable {
     private String nodeAddress;
     private int nodePort;
     private Socket socket;
+    // Whether the peer accepted the binary wire codec (null until known)
+    private Boolean binaryCodec;
 
     /**
      * Create an empty P2PNode with default values.
@@ -63,6 +70,8 @@ public class P2PNode implements AutoCloseable {
 
     public String getNodeAddress() {return this.nodeAddress;}
     public int getNodePort() {return this.nodePort;}
+    public Boolean getBinaryCodec() {return this.binaryCodec;}
+    public void setBinaryCodec(Boolean binaryCodec) {this.binaryCodec = binaryCodec;}
     
     public void setNodeAddress(String nodeAddress) {
         this.nodeAddress = nodeAddress;
@@ -173,7 +182,7 @@ public class P2PNode implements AutoCloseable {
      * @return Base64 representation of the node
      */
     public String toBase64() {
-        return Base64Utils.encodeToString(this.toJson().toString());
+        return Base64Utils.encodeToString(JsonWriter.toString(this::writeJson));
     }
 
     /**
@@ -185,7 +194,13 @@ public class P2PNode implements AutoCloseable {
     public boolean fromBase64(String nodeAsBase64) {
         try {
             String jsonStr = Base64Utils.decodeToString(nodeAsBase64);
-            return this.fromJson(new JsonObject(jsonStr));
+            try {
+                this.readJson(new JsonReader(jsonStr));
+                return true;
+            } catch (IOException e) {
+                // Unusual shape (e.g. quoted port): let the generic parser decide
+                return this.fromJson(new JsonObject(jsonStr));
+            }
         } catch (Exception e) {
             return false;
         }
@@ -203,6 +218,44 @@ public class P2PNode implements AutoCloseable {
         return json;
     }
 
+    /**
+     * Write this node as JSON. Same text as {@code toJson().toString()}.
+     *
+     * @param writer destination
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("nodeAddress").value(this.nodeAddress);
+        writer.name("nodePort").value(this.nodePort);
+        writer.endObject();
+    }
+
+    /**
+     * Populate this node straight from a JSON reader, without building a
+     * JsonObject. Unknown fields are skipped.
+     *
+     * @param reader reader positioned before the node object
+     * @throws IOException if the object is malformed or a field has an
+     *                     unexpected type
+     */
+    public void readJson(JsonReader reader) throws IOException {
+        String nodeAddress = null;
+        int nodePort = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "nodeAddress": nodeAddress = reader.nextString(); break;
+                case "nodePort": nodePort = reader.nextInt(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        this.nodeAddress = nodeAddress;
+        this.nodePort = nodePort;
+        this.socket = null;
+    }
+
     /**
      * Populate this node from a JSON representation.
      *
@@ -220,6 +273,41 @@ public class P2PNode implements AutoCloseable {
         }
     }
 
+    /**
+     * Serialize this node in the binary wire format, prefixed with the codec
+     * version.
+     *
+     * @return binary representation of the node
+     */
+    public byte[] toBytes() {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeByte(p2pblockchain.config.NetworkConfig.BINARY_CODEC_VERSION);
+        writer.writeString(this.nodeAddress);
+        writer.writeVarLong(this.nodePort);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Populate this node from its binary wire format.
+     *
+     * @param bytes binary representation returned by {@link #toBytes()}
+     * @return true if decoding succeeded, false otherwise
+     */
+    public boolean fromBytes(byte[] bytes) {
+        try {
+            BinaryReader reader = new BinaryReader(bytes);
+            if (reader.readByte() != p2pblockchain.config.NetworkConfig.BINARY_CODEC_VERSION) {
+                return false;
+            }
+            this.nodeAddress = reader.readString();
+            this.nodePort = (int) reader.readVarLong();
+            this.socket = null;
+            return !reader.hasRemaining();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     /**
      * Compute the hash of the P2PNode's Base64 representation.
      *
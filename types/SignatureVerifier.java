@@ -0,0 +1,200 @@
+package p2pblockchain.types;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.Logger;
+import p2pblockchain.utils.LruCache;
+import p2pblockchain.utils.SecurityUtils;
+
+/**
+ * Parallel transaction signature verification.
+ *
+ * Signature checks are the most expensive part of accepting a block or a
+ * cloned chain, so a list of transactions is spread over a fixed pool of
+ * daemon worker threads. Workers claim small batches of transactions from
+ * a shared cursor (see {@link #verifyEach}) and all of them stop as soon as
+ * one invalid signature is found. The calling thread takes part in the
+ * work, so a call always makes progress even while the pool is busy with
+ * another list.
+ *
+ * Ids of transactions whose signature was found valid are remembered in a
+ * bounded cache, so a transaction checked when it entered the mempool is
+ * not checked again when a block including it arrives or when it is
+ * relayed back to us. The id covers content and signature, so a tampered
+ * copy never matches a cached id.
+ *
+ * One instance is shared by block reception, chain cloning and mempool
+ * admission.
+ */
+public class SignatureVerifier {
+    private static final int MAX_BATCH_SIZE = 16;
+
+    private final int threadCount;
+    private final ExecutorService workers;
+    private final LruCache<Hash256, Boolean> verified =
+        new LruCache<Hash256, Boolean>(p2pblockchain.config.SecurityConfig.VERIFIED_SIGNATURE_CACHE_SIZE);
+
+    /**
+     * Create a verifier backed by a fixed pool of daemon worker threads.
+     *
+     * @param threadCount number of threads verifying a list, including the
+     *                    calling thread (at least 1)
+     */
+    public SignatureVerifier(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        // The caller verifies too, so the pool only needs threadCount - 1 workers
+        this.workers = this.threadCount == 1 ? null : Executors.newFixedThreadPool(this.threadCount - 1, runnable -> {
+            Thread thread = new Thread(runnable, "signature-verifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreadCount() {return this.threadCount;}
+
+    /**
+     * Verify the signature of a single transaction on the calling thread,
+     * unless it was already verified.
+     *
+     * @param transaction transaction to check
+     * @return true if the signature matches the sender and content
+     */
+    public boolean verify(Transaction transaction) {
+        Hash256 id = transaction.toHash();
+        if (this.verified.get(id) != null) {
+            return true;
+        }
+        boolean valid = SecurityUtils.isSignatureValid(transaction.getSender(), transaction.contentToCanonicalBytes(), transaction.getSignature());
+        if (valid) {
+            this.verified.put(id, Boolean.TRUE);
+        }
+        return valid;
+    }
+
+    /**
+     * Counters of the verified-signature cache.
+     *
+     * @return JSON object with size, capacity, hits, misses, evictions and hit rate
+     */
+    public JsonObject getCacheStats() {
+        return this.verified.toJson();
+    }
+
+    /**
+     * Verify the signatures of the given transactions in parallel and stop
+     * at the first invalid one.
+     *
+     * @param transactions transactions to check
+     * @return index of an invalid transaction (not necessarily the first
+     *         one in the list), or -1 if all signatures are valid
+     */
+    public int findInvalid(List<Transaction> transactions) {
+        int size = transactions.size();
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicInteger invalid = new AtomicInteger(-1);
+        int helpers = Math.min(this.threadCount, size) - 1;
+
+        ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+        for (int i = 0; i < helpers; i++) {
+            tasks.add(this.workers.submit(() -> verifyRange(transactions, cursor, invalid)));
+        }
+        verifyRange(transactions, cursor, invalid);
+
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (Exception e) {
+                Logger.error("Signature verification worker failed: " + e.getMessage());
+            }
+        }
+        return invalid.get();
+    }
+
+    /**
+     * Verify the signatures of the given transactions in parallel.
+     *
+     * @param transactions transactions to check
+     * @return true if every signature is valid
+     */
+    public boolean verifyAll(List<Transaction> transactions) {
+        return findInvalid(transactions) < 0;
+    }
+
+    /**
+     * Verify the signatures of a batch of transactions on the calling
+     * thread, skipping the ones already verified. Consecutive transactions
+     * of the same sender share one signature engine initialization.
+     *
+     * @param transactions transactions to check
+     * @return validity of each transaction
+     */
+    public boolean[] verifyEach(Transaction[] transactions) {
+        boolean[] valid = new boolean[transactions.length];
+        int[] pending = new int[transactions.length];
+        int pendingCount = 0;
+        for (int i = 0; i < transactions.length; i++) {
+            if (this.verified.get(transactions[i].toHash()) != null) {
+                valid[i] = true;
+            } else {
+                pending[pendingCount++] = i;
+            }
+        }
+        if (pendingCount == 0) {
+            return valid;
+        }
+
+        String[] senders = new String[pendingCount];
+        byte[][] contents = new byte[pendingCount][];
+        String[] signatures = new String[pendingCount];
+        for (int j = 0; j < pendingCount; j++) {
+            Transaction transaction = transactions[pending[j]];
+            senders[j] = transaction.getSender();
+            contents[j] = transaction.contentToCanonicalBytes();
+            signatures[j] = transaction.getSignature();
+        }
+        boolean[] checked = SecurityUtils.areSignaturesValid(senders, contents, signatures);
+        for (int j = 0; j < pendingCount; j++) {
+            if (checked[j]) {
+                valid[pending[j]] = true;
+                this.verified.put(transactions[pending[j]].toHash(), Boolean.TRUE);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Worker loop: claim batches of transactions from the shared cursor
+     * until the list is exhausted or an invalid signature was found by any
+     * worker.
+     */
+    private void verifyRange(List<Transaction> transactions, AtomicInteger cursor, AtomicInteger invalid) {
+        int size = transactions.size();
+        // Small enough batches for every thread to get several
+        int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, size / (4 * this.threadCount)));
+        int start;
+        while (invalid.get() < 0 && (start = cursor.getAndAdd(batchSize)) < size) {
+            Transaction[] batch = transactions.subList(start, Math.min(size, start + batchSize)).toArray(new Transaction[0]);
+            boolean[] valid;
+            try {
+                valid = verifyEach(batch);
+            } catch (RuntimeException e) {
+                Logger.error("Signature verification failed: " + e.getMessage());
+                invalid.compareAndSet(-1, start);
+                return;
+            }
+            for (int i = 0; i < valid.length; i++) {
+                if (!valid[i]) {
+                    invalid.compareAndSet(-1, start + i);
+                    break;
+                }
+            }
+        }
+    }
+}
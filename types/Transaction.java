@@ -1,8 +1,16 @@
 package p2pblockchain.types;
 
+import java.io.IOException;
+
 import p2pblockchain.utils.Base64Utils;
+import p2pblockchain.utils.BinaryReader;
+import p2pblockchain.utils.BinaryWriter;
+import p2pblockchain.utils.CanonicalWriter;
+import p2pblockchain.utils.Hash256;
 import p2pblockchain.utils.HashUtils;
 import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.JsonReader;
+import p2pblockchain.utils.JsonWriter;
 import p2pblockchain.utils.TimeUtils;
 
 /**
@@ -11,29 +19,38 @@ import p2pblockchain.utils.TimeUtils;
  * A Transaction contains sender and receiver addresses, an amount, an optional
  * fee, a timestamp, an optional message, and a signature.
  * This class provides JSON serialization/deserialization methods and convenience hashing helpers.
+ * Hashes and signatures are computed over the canonical encoding (see
+ * {@link CanonicalWriter}), never over the JSON text.
+ *
+ * Transactions are immutable: use the constructor or {@link #builder()} to
+ * create one, and {@link #withSignature(String)} or {@link #toBuilder()} to
+ * derive a modified copy. Their serialized forms and hashes are therefore
+ * computed at most once and cached.
+ *
+ * Text fields are never null: a null sender, receiver, message or signature
+ * is stored as empty, so a transaction decoded from any codec (JSON with
+ * explicit nulls, or binary) has the same canonical encoding and hash.
  */
-public class Transaction {
-    private String sender;
-    private String receiver;
-    private double amount;
-    private double fee;
-    private long timestamp;
-    private String message;
-    private String signature;
-    
-    /**
-     * Create an empty transaction with default values.
-     */
-    public Transaction() {
-        this.sender= "";
-        this.receiver = "";
-        this.amount = 0;
-        this.fee = 0;
-        this.timestamp = 0L;
-        this.message = "";
-        this.signature = "";
-    }
-    
+public final class Transaction {
+    private final String sender;
+    private final String receiver;
+    private final double amount;
+    private final double fee;
+    private final long timestamp;
+    private final String message;
+    private final String signature;
+
+    // Lazily computed, cached forms (racy single-check: every thread computes
+    // the same value). Strings and hashes are immutable and safe to publish
+    // this way; the arrays are volatile so a thread never sees one before
+    // its content
+    private String base64;
+    private String contentBase64;
+    private Hash256 hash;
+    private Hash256 contentHash;
+    private volatile byte[] bytes;
+    private volatile byte[] canonicalContent;
+
     /**
      * Create a transaction with all fields specified.
      *
@@ -54,8 +71,8 @@ public class Transaction {
             String message,
             String signature
     ) {
-        this.sender = sender;
-        this.receiver = receiver;
+        this.sender = textOrEmpty(sender);
+        this.receiver = textOrEmpty(receiver);
         this.amount = amount;
         this.fee = fee;
         if (timestamp == 0) {
@@ -63,17 +80,87 @@ public class Transaction {
         } else {
             this.timestamp = timestamp;
         }
-        this.message = message;
-        this.signature = signature;
+        this.message = textOrEmpty(message);
+        this.signature = textOrEmpty(signature);
     }
-    
+
+    private Transaction(Builder builder) {
+        this.sender = textOrEmpty(builder.sender);
+        this.receiver = textOrEmpty(builder.receiver);
+        this.amount = builder.amount;
+        this.fee = builder.fee;
+        this.timestamp = builder.timestamp;
+        this.message = textOrEmpty(builder.message);
+        this.signature = textOrEmpty(builder.signature);
+    }
+
+    private static String textOrEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Start building a transaction. Text fields default to empty and the
+     * timestamp to the current time.
+     *
+     * @return new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Start building a modified copy of this transaction.
+     *
+     * @return builder initialized with the fields of this transaction
+     */
+    public Builder toBuilder() {
+        return new Builder()
+            .sender(this.sender)
+            .receiver(this.receiver)
+            .amount(this.amount)
+            .fee(this.fee)
+            .timestamp(this.timestamp)
+            .message(this.message)
+            .signature(this.signature);
+    }
+
+    /**
+     * Copy of this transaction carrying the given signature. The content
+     * (and so {@link #contentToCanonicalBytes()} and {@link #contentToHash()})
+     * is unchanged.
+     *
+     * @param signature Signature over the transaction content
+     * @return signed copy
+     */
+    public Transaction withSignature(String signature) {
+        Transaction signed = this.toBuilder().signature(signature).build();
+        signed.contentBase64 = this.contentBase64;
+        signed.contentHash = this.contentHash;
+        signed.canonicalContent = this.canonicalContent;
+        return signed;
+    }
+
     /**
-     * Create a transaction by decoding a Base64-encoded JSON representation.
+     * Decode a Base64-encoded JSON transaction.
      *
      * @param transactionInBase64 Base64 string previously returned by {@link #toBase64}
+     * @return decoded transaction
+     * @throws IllegalArgumentException if the payload is not a valid transaction
      */
-    public Transaction(String transactionInBase64) {
-        this.fromBase64(transactionInBase64);
+    public static Transaction fromBase64(String transactionInBase64) {
+        try {
+            String jsonStr = Base64Utils.decodeToString(transactionInBase64);
+            try {
+                return readJson(new JsonReader(jsonStr));
+            } catch (IOException e) {
+                // Unusual shape (e.g. quoted numbers): let the generic parser decide
+                return fromJson(new JsonObject(jsonStr));
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid transaction: " + e.getMessage(), e);
+        }
     }
 
     public String getSender() {return this.sender;}
@@ -84,14 +171,6 @@ public class Transaction {
     public String getMessage() {return this.message;}
     public String getSignature() {return this.signature;}
 
-    public void setSender(String sender) {this.sender = sender;}
-    public void setReceiver(String receiver) {this.receiver = receiver;}
-    public void setAmount(double amount) {this.amount = amount;}
-    public void setFee(double fee) {this.fee = fee;}
-    public void setTimestamp(long timestamp) {this.timestamp = timestamp;}
-    public void setMessage(String message) {this.message = message;}
-    public void setSignature(String signature) {this.signature = signature;}
-
     @Override
     public String toString() {
         return "Transaction{" +
@@ -105,8 +184,33 @@ public class Transaction {
                 '}';
     }
 
+    /**
+     * Two transactions are equal when their full serialized forms (content
+     * and signature) are equal, i.e. when they have the same {@link #toHash()}.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Transaction)) {
+            return false;
+        }
+        return this.toHash().equals(((Transaction) other).toHash());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.toHash().hashCode();
+    }
+
     public String toBase64() {
-        return Base64Utils.encodeToString(this.toJson().toString());
+        String cached = this.base64;
+        if (cached == null) {
+            cached = Base64Utils.encodeToString(JsonWriter.toString(this::writeJson));
+            this.base64 = cached;
+        }
+        return cached;
     }
 
     /**
@@ -116,30 +220,157 @@ public class Transaction {
      * @return Base64(JSON(content(transaction)))
      */
     public String contentToBase64() {
-        return Base64Utils.encodeToString(this.contentToJson().toString());
+        String cached = this.contentBase64;
+        if (cached == null) {
+            cached = Base64Utils.encodeToString(JsonWriter.toString(this::writeContentJson));
+            this.contentBase64 = cached;
+        }
+        return cached;
+    }
+    
+    /**
+     * Serialize the transaction in the binary wire format, prefixed with the
+     * codec version.
+     *
+     * @return binary representation of the transaction
+     */
+    public byte[] toBytes() {
+        byte[] cached = this.bytes;
+        if (cached == null) {
+            BinaryWriter writer = new BinaryWriter();
+            writer.writeByte(p2pblockchain.config.NetworkConfig.BINARY_CODEC_VERSION);
+            this.writeTo(writer);
+            cached = writer.toByteArray();
+            this.bytes = cached;
+        }
+        return cached.clone();
     }
 
     /**
-     * Decode a Base64-encoded JSON transaction and populate this object.
+     * Decode a transaction from its binary wire format.
      *
-     * @param transactionInBase64 Base64(JSON(transaction))
-     * @return true if parsing succeeded, false otherwise
+     * @param bytes binary representation returned by {@link #toBytes()}
+     * @return decoded transaction
+     * @throws IllegalArgumentException if the data is not a valid transaction
      */
-    public boolean fromBase64(String transactionInBase64) {
-        try {
-            String jsonStr = Base64Utils.decodeToString(transactionInBase64);
-            return this.fromJson(new JsonObject(jsonStr));
-        } catch (Exception e) {
-            return false;
+    public static Transaction fromBytes(byte[] bytes) {
+        BinaryReader reader = new BinaryReader(bytes);
+        if (reader.readByte() != p2pblockchain.config.NetworkConfig.BINARY_CODEC_VERSION) {
+            throw new IllegalArgumentException("Unsupported codec version");
+        }
+        Transaction transaction = readFrom(reader);
+        if (reader.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing data after transaction");
         }
+        return transaction;
     }
-    
-    public String toHash() {
-        return HashUtils.hashString(this.toBase64());
+
+    /**
+     * Write the transaction fields (without codec version) to a binary writer.
+     * Addresses and the signature are written as raw key/signature bytes.
+     *
+     * @param writer destination
+     */
+    public void writeTo(BinaryWriter writer) {
+        writer.writeBase64(this.sender);
+        writer.writeBase64(this.receiver);
+        writer.writeDouble(this.amount);
+        writer.writeDouble(this.fee);
+        writer.writeSignedVarLong(this.timestamp);
+        writer.writeString(this.message);
+        writer.writeBase64(this.signature);
+    }
+
+    /**
+     * Read the transaction fields written by {@link #writeTo(BinaryWriter)}.
+     *
+     * @param reader source
+     * @return decoded transaction
+     */
+    public static Transaction readFrom(BinaryReader reader) {
+        return builder()
+            .sender(reader.readBase64())
+            .receiver(reader.readBase64())
+            .amount(reader.readDouble())
+            .fee(reader.readDouble())
+            .timestamp(reader.readSignedVarLong())
+            .message(reader.readString())
+            .signature(reader.readBase64())
+            .build();
+    }
+
+    /**
+     * Canonical encoding of the transaction content (excluding the
+     * signature). This is what the sender signs and what signatures are
+     * verified against.
+     *
+     * @return canonical content bytes
+     */
+    public byte[] contentToCanonicalBytes() {
+        return canonicalContent().clone();
+    }
+
+    /**
+     * Canonical encoding of the whole transaction (content and signature).
+     *
+     * @return canonical bytes
+     */
+    public byte[] toCanonicalBytes() {
+        CanonicalWriter writer = new CanonicalWriter(256);
+        writer.putTag(CanonicalWriter.TAG_TRANSACTION);
+        writeCanonicalFields(writer);
+        writer.putString(this.signature);
+        return writer.toByteArray();
+    }
+
+    private byte[] canonicalContent() {
+        byte[] cached = this.canonicalContent;
+        if (cached == null) {
+            CanonicalWriter writer = new CanonicalWriter(192);
+            writer.putTag(CanonicalWriter.TAG_TRANSACTION_CONTENT);
+            writeCanonicalFields(writer);
+            cached = writer.toByteArray();
+            this.canonicalContent = cached;
+        }
+        return cached;
+    }
+
+    private void writeCanonicalFields(CanonicalWriter writer) {
+        writer.putString(this.sender);
+        writer.putString(this.receiver);
+        writer.putDouble(this.amount);
+        writer.putDouble(this.fee);
+        writer.putLong(this.timestamp);
+        writer.putString(this.message);
     }
 
-    public String contentToHash() {
-        return HashUtils.hashString(this.contentToBase64());
+    /**
+     * Identity hash (transaction id) of the transaction, covering content
+     * and signature, computed once.
+     *
+     * @return hash of {@link #toCanonicalBytes()}
+     */
+    public Hash256 toHash() {
+        Hash256 cached = this.hash;
+        if (cached == null) {
+            cached = HashUtils.hash256(this.toCanonicalBytes());
+            this.hash = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Hash of the signed content (excluding the signature), computed once.
+     *
+     * @return hash of {@link #contentToCanonicalBytes()}
+     */
+    public Hash256 contentToHash() {
+        Hash256 cached = this.contentHash;
+        if (cached == null) {
+            cached = HashUtils.hash256(this.canonicalContent());
+            this.contentHash = cached;
+        }
+        return cached;
     }
 
     /**
@@ -176,46 +407,119 @@ public class Transaction {
     }
 
     /**
-     * Populate this transaction from a JSON representation.
+     * Write this transaction as JSON, field by field. Same text as
+     * {@code toJson().toString()}.
      *
-     * @param json JSON representation of the transaction
-     * @return true if parsing succeeded, false otherwise
+     * @param writer destination
+     * @throws IOException if writing fails
      */
-    public boolean fromJson(JsonObject json) {
-        try {
-            this.sender = json.getString("sender");
-            this.receiver = json.getString("receiver");
-            this.amount = json.getDouble("amount");
-            this.fee = json.getDouble("fee");
-            this.timestamp = json.getLong("timestamp");
-            this.message = json.getString("message");
-            this.signature = json.getString("signature");
-            return true;
-        } catch (Exception e) {
-            return false;
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writeContentFields(writer);
+        writer.name("signature").value(this.signature);
+        writer.endObject();
+    }
+
+    /**
+     * Write the transaction content (excluding the signature) as JSON, field
+     * by field. Same text as {@code contentToJson().toString()}.
+     *
+     * @param writer destination
+     * @throws IOException if writing fails
+     */
+    public void writeContentJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writeContentFields(writer);
+        writer.endObject();
+    }
+
+    private void writeContentFields(JsonWriter writer) throws IOException {
+        writer.name("sender").value(this.sender);
+        writer.name("receiver").value(this.receiver);
+        writer.name("amount").value(this.amount);
+        writer.name("fee").value(this.fee);
+        writer.name("timestamp").value(this.timestamp);
+        writer.name("message").value(this.message);
+    }
+
+    /**
+     * Decode a transaction object straight from a JSON reader, without
+     * building a JsonObject. Missing fields get the same values as with
+     * {@link #fromJson(JsonObject)}; unknown fields are skipped.
+     *
+     * @param reader reader positioned before the transaction object
+     * @return decoded transaction
+     * @throws IOException if the object is malformed or a field has an
+     *                     unexpected type
+     */
+    public static Transaction readJson(JsonReader reader) throws IOException {
+        Builder builder = builder().sender(null).receiver(null).timestamp(0L).message(null).signature(null);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sender": builder.sender(reader.nextString()); break;
+                case "receiver": builder.receiver(reader.nextString()); break;
+                case "amount": builder.amount(reader.nextDouble()); break;
+                case "fee": builder.fee(reader.nextDouble()); break;
+                case "timestamp": builder.timestamp(reader.nextLong()); break;
+                case "message": builder.message(reader.nextString()); break;
+                case "signature": builder.signature(reader.nextString()); break;
+                default: reader.skipValue();
+            }
         }
+        reader.endObject();
+        return builder.build();
     }
 
     /**
-     * Populate this transaction from a JSON representation of its content
-     * (excluding the signature).
+     * Decode a transaction from a JSON representation.
      *
-     * @param json JSON representation of the transaction content
-     * @return true if parsing succeeded, false otherwise
+     * @param json JSON representation of the transaction
+     * @return decoded transaction
+     * @throws IllegalArgumentException if a field has an invalid value
      */
-    public boolean fromContentJson(JsonObject json) {
+    public static Transaction fromJson(JsonObject json) {
         try {
-            this.sender = json.getString("sender");
-            this.receiver = json.getString("receiver");
-            this.amount = json.getDouble("amount");
-            this.fee = json.getDouble("fee");
-            this.timestamp = json.getLong("timestamp");
-            this.message = json.getString("message");
-            // signature intentionally not set from content JSON
-            this.signature = "";
-            return true;
-        } catch (Exception e) {
-            return false;
+            return builder()
+                .sender(json.getString("sender"))
+                .receiver(json.getString("receiver"))
+                .amount(json.getDouble("amount"))
+                .fee(json.getDouble("fee"))
+                .timestamp(json.getLong("timestamp"))
+                .message(json.getString("message"))
+                .signature(json.getString("signature"))
+                .build();
+        } catch (ClassCastException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid transaction JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builder for {@link Transaction}. Unlike the public constructor, a zero
+     * timestamp is kept as is, so decoded transactions round-trip exactly.
+     */
+    public static final class Builder {
+        private String sender = "";
+        private String receiver = "";
+        private double amount = 0;
+        private double fee = 0;
+        private long timestamp = TimeUtils.getNowAsLong();
+        private String message = "";
+        private String signature = "";
+
+        private Builder() {
+        }
+
+        public Builder sender(String sender) {this.sender = sender; return this;}
+        public Builder receiver(String receiver) {this.receiver = receiver; return this;}
+        public Builder amount(double amount) {this.amount = amount; return this;}
+        public Builder fee(double fee) {this.fee = fee; return this;}
+        public Builder timestamp(long timestamp) {this.timestamp = timestamp; return this;}
+        public Builder message(String message) {this.message = message; return this;}
+        public Builder signature(String signature) {this.signature = signature; return this;}
+
+        public Transaction build() {
+            return new Transaction(this);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,11 @@
 package p2pblockchain.types;
 
+import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
 import java.security.PrivateKey;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
-import java.security.Signature;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 
@@ -14,6 +14,7 @@ import javax.crypto.Cipher;
 import p2pblockchain.utils.Converter;
 import p2pblockchain.utils.FilesUtils;
 import p2pblockchain.utils.Logger;
+import p2pblockchain.utils.SecurityUtils;
 
 /**
  * Represents a wallet containing a public/private key pair.
@@ -68,18 +69,24 @@ public class Wallet {
     }
 
     /**
-     * Sign the given data using the wallet's private key.
+     * Sign the given string (UTF-8 encoded) using the wallet's private key.
      *
      * @param data Input data to sign
      * @return Base64-encoded signature string
      */
     public String sign(String data) {
+        return sign(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sign the given bytes using the wallet's private key.
+     *
+     * @param data Input data to sign (e.g. {@link Transaction#contentToCanonicalBytes()})
+     * @return Base64-encoded signature string
+     */
+    public String sign(byte[] data) {
         try {
-            Signature signer = Signature.getInstance(p2pblockchain.config.SecurityConfig.SIGNATURE_ALGORITHM);
-            signer.initSign(privateKey);
-            signer.update(data.getBytes());
-            byte[] signatureBytes = signer.sign();
-            return Converter.bytesToBase64(signatureBytes);
+            return SecurityUtils.sign(privateKey, data);
         } catch (Exception e) {
             Logger.error("Signing failed.");
             e.printStackTrace();
@@ -87,6 +94,32 @@ public class Wallet {
         }
     }
 
+    /**
+     * Sign a batch of transactions, initializing the signature engine once
+     * for the whole batch.
+     *
+     * @param transactions unsigned transactions sent from this wallet
+     * @return signed copies, in the same order (empty if signing failed)
+     */
+    public Transaction[] signAll(Transaction[] transactions) {
+        byte[][] contents = new byte[transactions.length][];
+        for (int i = 0; i < transactions.length; i++) {
+            contents[i] = transactions[i].contentToCanonicalBytes();
+        }
+        try {
+            String[] signatures = SecurityUtils.signAll(privateKey, contents);
+            Transaction[] signed = new Transaction[transactions.length];
+            for (int i = 0; i < transactions.length; i++) {
+                signed[i] = transactions[i].withSignature(signatures[i]);
+            }
+            return signed;
+        } catch (Exception e) {
+            Logger.error("Signing failed.");
+            e.printStackTrace();
+            return new Transaction[0];
+        }
+    }
+
     /**
      * Decrypt the given Base64-encoded cipher text using the wallet's private key.
      *
@@ -0,0 +1,252 @@
+package p2pblockchain.types;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import p2pblockchain.utils.Converter;
+import p2pblockchain.utils.DifficultyUtils;
+import p2pblockchain.utils.Hash256;
+import p2pblockchain.utils.JsonObject;
+import p2pblockchain.utils.TimeUtils;
+
+/**
+ * Bookkeeping for work handed out to external miner processes
+ * (getWork/submitWork).
+ *
+ * Each work unit is a block template identified by a work id. A unit is only
+ * valid for the chain tip it was built on: as soon as work is requested or
+ * submitted for a different tip, all outstanding units are dropped and late
+ * submissions are reported as stale.
+ *
+ * Submissions are checked against a share target a fixed factor easier than
+ * the block target (see BlockchainConfig.WORK_SHARE_TARGET_FACTOR), so miners
+ * report progress regularly at any difficulty and their hash rate can be
+ * estimated from their share rate.
+ */
+public class WorkManager {
+
+    /**
+     * Outcome of a submission.
+     */
+    public enum Result {
+        // Solution meets the block target and the block joined the chain
+        BLOCK,
+        // Solution only meets the share target
+        SHARE,
+        // Work unit unknown or built on an outdated chain tip
+        STALE,
+        // Solution does not meet the share target, or was already submitted
+        INVALID
+    }
+
+    /**
+     * A block template handed out to miners.
+     */
+    private static class Work {
+        private final Block template;
+        private final String contentKey;
+        private final JsonObject description;
+        private final byte[] shareTarget;
+        private final HashSet<Hash256> submittedHashes = new HashSet<Hash256>();
+
+        private Work(Block template, String contentKey, JsonObject description, byte[] shareTarget) {
+            this.template = template;
+            this.contentKey = contentKey;
+            this.description = description;
+            this.shareTarget = shareTarget;
+        }
+    }
+
+    /**
+     * Submission counters for one external miner.
+     */
+    private static class MinerStats {
+        private final long firstSeen = TimeUtils.getNowAsLong();
+        private long shares = 0;
+        private long blocks = 0;
+        private long stale = 0;
+        private long invalid = 0;
+        private long lastSubmission = 0;
+
+        private double sharesPerMinute() {
+            long elapsed = Math.max(1, TimeUtils.getNowAsLong() - this.firstSeen);
+            return (this.shares + this.blocks) * 60000.0 / elapsed;
+        }
+    }
+
+    private final LinkedHashMap<String, Work> works = new LinkedHashMap<String, Work>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Work> eldest) {
+            if (size() > p2pblockchain.config.BlockchainConfig.MAX_OUTSTANDING_WORK) {
+                WorkManager.this.workIdsByContent.remove(eldest.getValue().contentKey);
+                return true;
+            }
+            return false;
+        }
+    };
+    // Work id by template content (Merkle root and target), so miners polling
+    // an unchanged template get the same work unit back; holds exactly the
+    // entries of works
+    private final HashMap<String, String> workIdsByContent = new HashMap<String, String>();
+    // Miner ids are chosen by the remote side: only miners that submitted a
+    // valid share are tracked, least recently active dropped first
+    private final LinkedHashMap<String, MinerStats> minerStats = new LinkedHashMap<String, MinerStats>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MinerStats> eldest) {
+            return size() > p2pblockchain.config.BlockchainConfig.MAX_TRACKED_MINERS;
+        }
+    };
+    private long tipVersion = -1;
+    private long nextWorkId = 0;
+
+    /**
+     * Register a new work unit. If an outstanding unit already covers the
+     * same transactions and target, that unit is returned instead.
+     *
+     * @param template   block template with everything but nonce/timestamp set
+     * @param tipVersion chain tip version the template was built on
+     * @return JSON describing the work: work id, hex header, block and share targets
+     */
+    public synchronized JsonObject createWork(Block template, long tipVersion) {
+        switchTip(tipVersion);
+
+        String contentKey = template.getMerkleRoot() + ":" + template.getTargetBits();
+        Work existing = this.works.get(this.workIdsByContent.get(contentKey));
+        if (existing != null) {
+            return existing.description;
+        }
+
+        int shareTargetBits = shareTargetBits(template.getTargetBits());
+        String workId = Long.toHexString(this.nextWorkId++);
+        JsonObject json = new JsonObject();
+        json.put("workId", workId);
+        json.put("header", Converter.bytesToHex(template.getHeader().toBytes()));
+        json.put("targetBits", template.getTargetBits());
+        json.put("shareTargetBits", shareTargetBits);
+
+        this.works.put(workId, new Work(template, contentKey, json, DifficultyUtils.compactToTarget(shareTargetBits)));
+        this.workIdsByContent.put(contentKey, workId);
+        return json;
+    }
+
+    /**
+     * Rebuild the block described by a submission and check it against the
+     * share target. The block target is left to the caller.
+     *
+     * @param workId     id returned by {@link #createWork}
+     * @param nonce      nonce found by the miner
+     * @param timestamp  timestamp used by the miner
+     * @param tipVersion current chain tip version
+     * @return the solved block, or null if the work is unknown or stale, the
+     *         solution misses the share target or was already submitted
+     */
+    public synchronized Block solve(String workId, int nonce, long timestamp, long tipVersion) {
+        switchTip(tipVersion);
+        Work work = this.works.get(workId);
+        if (work == null) {
+            return null;
+        }
+
+        Block block = new Block(work.template);
+        block.setNonce(nonce);
+        block.setTimestamp(timestamp);
+        byte[] digest = block.getHeader().toHashBytes();
+        Hash256 hash = Hash256.of(digest);
+        if (!DifficultyUtils.meetsTarget(digest, work.shareTarget) || !work.submittedHashes.add(hash)) {
+            return null;
+        }
+        block.setHash(hash);
+        return block;
+    }
+
+    /**
+     * Check whether a work id is still known (i.e. not stale).
+     *
+     * @param workId id returned by {@link #createWork}
+     * @return true if the work unit is outstanding
+     */
+    public synchronized boolean isOutstanding(String workId) {
+        return this.works.containsKey(workId);
+    }
+
+    /**
+     * Account the outcome of a submission against a miner. A miner is only
+     * tracked from its first share or block on; stale and invalid
+     * submissions of unknown miners are not recorded.
+     *
+     * @param minerId identifier chosen by the external miner
+     * @param result  outcome of the submission
+     */
+    public synchronized void record(String minerId, Result result) {
+        MinerStats stats = this.minerStats.get(minerId);
+        if (stats == null) {
+            if (result != Result.BLOCK && result != Result.SHARE) {
+                return;
+            }
+            stats = new MinerStats();
+            this.minerStats.put(minerId, stats);
+        }
+        switch (result) {
+            case BLOCK:
+                stats.blocks++;
+                break;
+            case SHARE:
+                stats.shares++;
+                break;
+            case STALE:
+                stats.stale++;
+                break;
+            default:
+                stats.invalid++;
+        }
+        stats.lastSubmission = TimeUtils.getNowAsLong();
+    }
+
+    /**
+     * Describe the submissions of every known external miner.
+     *
+     * @return one human-readable line per miner
+     */
+    public synchronized ArrayList<String> describeMiners() {
+        ArrayList<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, MinerStats> entry : this.minerStats.entrySet()) {
+            MinerStats stats = entry.getValue();
+            lines.add(entry.getKey()
+                + ": shares=" + stats.shares
+                + ", blocks=" + stats.blocks
+                + ", stale=" + stats.stale
+                + ", invalid=" + stats.invalid
+                + ", rate=" + String.format("%.2f", stats.sharesPerMinute()) + " shares/min"
+                + ", last=" + (stats.lastSubmission == 0 ? "never" : TimeUtils.longTimestampToInstant(stats.lastSubmission).toString()));
+        }
+        return lines;
+    }
+
+    /**
+     * Drop all outstanding work when the chain tip has changed.
+     */
+    private void switchTip(long tipVersion) {
+        if (tipVersion != this.tipVersion) {
+            this.works.clear();
+            this.workIdsByContent.clear();
+            this.tipVersion = tipVersion;
+        }
+    }
+
+    /**
+     * Share target for a block target: WORK_SHARE_TARGET_FACTOR times easier
+     * than the block target, capped at the proof-of-work limit and never
+     * harder than the block target itself.
+     */
+    private static int shareTargetBits(int blockTargetBits) {
+        BigInteger blockTarget = DifficultyUtils.compactToBigInteger(blockTargetBits);
+        BigInteger limit = DifficultyUtils.compactToBigInteger(p2pblockchain.config.BlockchainConfig.POW_LIMIT_BITS);
+        BigInteger shareTarget = blockTarget.multiply(BigInteger.valueOf(p2pblockchain.config.BlockchainConfig.WORK_SHARE_TARGET_FACTOR)).min(limit);
+        int shareBits = DifficultyUtils.targetToCompact(shareTarget);
+        return DifficultyUtils.compactToBigInteger(shareBits).compareTo(blockTarget) >= 0 ? shareBits : blockTargetBits;
+    }
+}
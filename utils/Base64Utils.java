@@ -1,5 +1,10 @@
 package p2pblockchain.utils;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Base64;
 import java.nio.charset.StandardCharsets;
 
@@ -46,4 +51,80 @@ public class Base64Utils {
     public static String decodeToString(String base64) {
         return new String(decode(base64), StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+
+    /**
+     * Wrap a stream so that bytes written to the result are Base64-encoded
+     * on the fly. Closing the result writes the final padding but leaves the
+     * underlying stream (e.g. a socket) open.
+     *
+     * @param out Stream receiving the Base64 text
+     * @return Stream accepting the raw bytes
+     */
+    public static OutputStream encodingStream(OutputStream out) {
+        return Base64.getEncoder().wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                this.out.flush();
+            }
+        });
+    }
+
+    /**
+     * Wrap a stream so that one line of Base64 text read from it is decoded
+     * on the fly. The result ends at the first newline (which is consumed)
+     * or at the end of the underlying stream, so line-based protocols can
+     * keep reading after it. A trailing '\r' is ignored. Closing the result
+     * skips whatever is left of the line (the decoder stops at the padding)
+     * but leaves the underlying stream open.
+     *
+     * @param in Stream providing the Base64 line (ideally buffered, as it is
+     *           read one byte at a time)
+     * @return Stream of the decoded bytes
+     */
+    public static InputStream decodingLineStream(InputStream in) {
+        return Base64.getDecoder().wrap(new FilterInputStream(in) {
+            private boolean endOfLine = false;
+
+            @Override
+            public int read() throws IOException {
+                if (this.endOfLine) {
+                    return -1;
+                }
+                int c = this.in.read();
+                while (c == '\r') {
+                    c = this.in.read();
+                }
+                if (c == '\n' || c == -1) {
+                    this.endOfLine = true;
+                    return -1;
+                }
+                return c;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = 0;
+                while (count < len) {
+                    int c = read();
+                    if (c == -1) {
+                        break;
+                    }
+                    b[off + count++] = (byte) c;
+                }
+                return count == 0 && len > 0 ? -1 : count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Leave the underlying stream open, positioned after the line
+                while (read() != -1) {
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package p2pblockchain.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader for the compact binary wire format written by {@link BinaryWriter}.
+ *
+ * Malformed input (truncated data, oversized lengths or varints) raises an
+ * IllegalArgumentException.
+ */
+public class BinaryReader {
+    private final byte[] data;
+    private int position;
+
+    public BinaryReader(byte[] data) {
+        this.data = data;
+        this.position = 0;
+    }
+
+    public boolean hasRemaining() {
+        return this.position < this.data.length;
+    }
+
+    public int readByte() {
+        require(1);
+        return this.data[this.position++] & 0xff;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read a varint that must fit a non-negative int (lengths and counts).
+     */
+    public int readLength() {
+        long value = readVarLong();
+        if (value < 0 || value > this.data.length - this.position) {
+            throw new IllegalArgumentException("Invalid length: " + value);
+        }
+        return (int) value;
+    }
+
+    public int readFixedInt() {
+        require(4);
+        int value = ((this.data[this.position] & 0xff) << 24)
+            | ((this.data[this.position + 1] & 0xff) << 16)
+            | ((this.data[this.position + 2] & 0xff) << 8)
+            | (this.data[this.position + 3] & 0xff);
+        this.position += 4;
+        return value;
+    }
+
+    public long readFixedLong() {
+        return ((long) readFixedInt() << 32) | (readFixedInt() & 0xffffffffL);
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readFixedLong());
+    }
+
+    public byte[] readBytes() {
+        int length = readLength();
+        byte[] value = new byte[length];
+        System.arraycopy(this.data, this.position, value, 0, length);
+        this.position += length;
+        return value;
+    }
+
+    public String readString() {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a hash written by {@link BinaryWriter#writeHash(Hash256)}: its
+     * {@link Hash256#SIZE} raw bytes.
+     */
+    public Hash256 readHash256() {
+        require(Hash256.SIZE);
+        Hash256 hash = Hash256.of(this.data, this.position);
+        this.position += Hash256.SIZE;
+        return hash;
+    }
+
+    public String readBase64() {
+        return readByte() == BinaryWriter.RAW ? Base64Utils.encode(readBytes()) : readString();
+    }
+
+    private void require(int bytes) {
+        if (this.data.length - this.position < bytes) {
+            throw new IllegalArgumentException("Unexpected end of data");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package p2pblockchain.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer for the compact binary wire format.
+ *
+ * Integers of unbounded size are written as varints (7 bits per byte, high
+ * bit set when more bytes follow; signed values are zigzag-encoded first).
+ * Amounts are written as fixed-width 8-byte IEEE doubles so they decode to
+ * exactly the same value. Hashes are always {@link Hash256} values written
+ * as their 32 raw bytes. Keys and signatures are written as raw bytes when
+ * they are canonical Base64, and as UTF-8 text otherwise, so any value
+ * round-trips exactly.
+ *
+ * @see BinaryReader
+ */
+public class BinaryWriter {
+    // Field encodings for keys and signatures
+    static final int TEXT = 0;
+    static final int RAW = 1;
+
+    private final ByteArrayOutputStream out;
+
+    public BinaryWriter() {
+        this.out = new ByteArrayOutputStream();
+    }
+
+    public BinaryWriter(int initialSize) {
+        this.out = new ByteArrayOutputStream(initialSize);
+    }
+
+    public byte[] toByteArray() {
+        return this.out.toByteArray();
+    }
+
+    public void writeByte(int value) {
+        this.out.write(value);
+    }
+
+    /**
+     * Write a non-negative value as a varint.
+     */
+    public void writeVarLong(long value) {
+        while ((value & ~0x7fL) != 0) {
+            this.out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        this.out.write((int) value);
+    }
+
+    /**
+     * Write a signed value as a zigzag varint (small magnitudes stay short).
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeFixedInt(int value) {
+        this.out.write(value >>> 24);
+        this.out.write(value >>> 16);
+        this.out.write(value >>> 8);
+        this.out.write(value);
+    }
+
+    public void writeFixedLong(long value) {
+        writeFixedInt((int) (value >>> 32));
+        writeFixedInt((int) value);
+    }
+
+    public void writeDouble(double value) {
+        writeFixedLong(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Write a length-prefixed byte array.
+     */
+    public void writeBytes(byte[] value) {
+        writeVarLong(value.length);
+        this.out.write(value, 0, value.length);
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 string (null is written as empty).
+     */
+    public void writeString(String value) {
+        writeBytes(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write a hash as its {@link Hash256#SIZE} raw bytes, without tag or
+     * length (read back with {@link BinaryReader#readHash256()}).
+     */
+    public void writeHash(Hash256 hash) {
+        byte[] raw = new byte[Hash256.SIZE];
+        hash.writeTo(raw, 0);
+        this.out.write(raw, 0, raw.length);
+    }
+
+    /**
+     * Write a Base64-encoded key or signature, as raw bytes when it is
+     * canonical Base64.
+     */
+    public void writeBase64(String base64) {
+        byte[] raw = null;
+        if (base64 != null && !base64.isEmpty()) {
+            try {
+                raw = Base64Utils.decode(base64);
+                if (!Base64Utils.encode(raw).equals(base64)) {
+                    raw = null;
+                }
+            } catch (IllegalArgumentException e) {
+                raw = null;
+            }
+        }
+        if (raw != null) {
+            this.out.write(RAW);
+            writeBytes(raw);
+        } else {
+            this.out.write(TEXT);
+            writeString(base64);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package p2pblockchain.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer for the canonical encoding that consensus hashes and signatures are
+ * computed over.
+ *
+ * Unlike the JSON and binary wire formats, this encoding is fixed: it never
+ * depends on map ordering, number formatting, the platform charset or wire
+ * codec optimizations, so every JVM and locale produces the same bytes for
+ * the same values. All integers are big-endian.
+ * <pre>
+ *   tag     1 byte, identifies the kind of record (domain separation),
+ *           followed by 1 byte of encoding version
+ *   long    8 bytes, two's complement
+ *   double  8 bytes, {@link Double#doubleToLongBits} (single NaN form)
+ *   string  4-byte length then UTF-8 bytes; null is written as length -1
+ * </pre>
+ * Each record starts with its tag and
+ * {@code SecurityConfig.CANONICAL_ENCODING_VERSION}, then its fields in a
+ * fixed order defined by the record.
+ */
+public class CanonicalWriter {
+    /** Transaction content, i.e. what the sender signs. */
+    public static final int TAG_TRANSACTION_CONTENT = 0x01;
+    /** Transaction content and signature (transaction id). */
+    public static final int TAG_TRANSACTION = 0x02;
+    /** Miner address and rewards of a block. */
+    public static final int TAG_COINBASE = 0x03;
+
+    private final ByteArrayOutputStream out;
+
+    public CanonicalWriter(int initialSize) {
+        this.out = new ByteArrayOutputStream(initialSize);
+    }
+
+    public byte[] toByteArray() {
+        return this.out.toByteArray();
+    }
+
+    /**
+     * Start a record: write its tag and the canonical encoding version.
+     *
+     * @param tag one of the TAG_ constants
+     * @return this writer
+     */
+    public CanonicalWriter putTag(int tag) {
+        this.out.write(tag);
+        this.out.write(p2pblockchain.config.SecurityConfig.CANONICAL_ENCODING_VERSION);
+        return this;
+    }
+
+    public CanonicalWriter putLong(long value) {
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+        return this;
+    }
+
+    public CanonicalWriter putDouble(double value) {
+        return putLong(Double.doubleToLongBits(value));
+    }
+
+    public CanonicalWriter putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return this;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        this.out.write(bytes, 0, bytes.length);
+        return this;
+    }
+
+    private void putInt(int value) {
+        this.out.write(value >>> 24);
+        this.out.write(value >>> 16);
+        this.out.write(value >>> 8);
+        this.out.write(value);
+    }
+}
@@ -0,0 +1,164 @@
+package p2pblockchain.utils;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Utility class for compressing bulk transfers (chain exchange).
+ *
+ * Uses raw Deflate primed with {@link #DICTIONARY}, a preset dictionary of
+ * the JSON field names and of the common prefixes of addresses and
+ * signatures. Back-references into the dictionary let even the first block
+ * of a payload compress well. Both ends must use the same dictionary: a
+ * change to it needs a new negotiation message (see
+ * {@code MessageType.USE_COMPRESSED_EXCHANGE}).
+ */
+public class CompressionUtils {
+    private static final int BUFFER_SIZE = 8192;
+
+    // zlib favours the end of the dictionary, so the most frequent strings
+    // (transaction fields, X.509 EC address prefix) come last
+    private static final byte[] DICTIONARY = (
+        "{\"chain\":[{\"version\":3,\"previousHash\":\"\",\"hash\":\"\",\"merkleRoot\":\"\"," +
+        "\"targetBits\":,\"nonce\":,\"timestamp\":,\"minerAddress\":\"MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE\"," +
+        "\"minerRewards\":,\"transactions\":[]},{\"version\":3,\"previousHash\":\"" +
+        "\"signature\":\"MEYCIQ\"},\"signature\":\"MEUCIQ\"}," +
+        "{\"sender\":\"MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE\",\"receiver\":\"MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE\"," +
+        "\"amount\":.0,\"fee\":0.,\"timestamp\":17,\"message\":\"\",\"signature\":\"ME"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Wrap a stream so that bytes written to the result are compressed on the
+     * fly. Closing the result finishes the compressed data and closes the
+     * underlying stream.
+     *
+     * @param out Stream receiving the compressed bytes
+     * @return Stream accepting the raw bytes
+     */
+    public static OutputStream deflatingStream(OutputStream out) {
+        Deflater deflater = new Deflater(p2pblockchain.config.NetworkConfig.EXCHANGE_COMPRESSION_LEVEL, true);
+        deflater.setDictionary(DICTIONARY);
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // Not ended by DeflaterOutputStream, as we supplied it
+                    this.def.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap a stream of data written by {@link #deflatingStream(OutputStream)}
+     * so that it is decompressed on the fly.
+     *
+     * @param in Stream providing the compressed bytes
+     * @return Stream of the raw bytes
+     */
+    public static InputStream inflatingStream(InputStream in) {
+        Inflater inflater = new Inflater(true);
+        inflater.setDictionary(DICTIONARY);
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    this.inf.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Output stream that counts the bytes written through it.
+     */
+    public static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        public long getCount() {return this.count;}
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+
+    /**
+     * Input stream that counts the bytes read through it, optionally failing
+     * once more than a given number of bytes were read.
+     */
+    public static class CountingInputStream extends FilterInputStream {
+        private final long limit;
+        private long count = 0;
+
+        public CountingInputStream(InputStream in) {
+            this(in, Long.MAX_VALUE);
+        }
+
+        /**
+         * @param in    stream to read from
+         * @param limit maximum number of bytes that may be read
+         */
+        public CountingInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        public long getCount() {return this.count;}
+
+        @Override
+        public int read() throws IOException {
+            int b = this.in.read();
+            if (b != -1) {
+                add(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = this.in.read(b, off, len);
+            if (n > 0) {
+                add(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = this.in.skip(n);
+            add(skipped);
+            return skipped;
+        }
+
+        private void add(long n) throws IOException {
+            this.count += n;
+            if (this.count > this.limit) {
+                throw new IOException("stream exceeds the limit of " + this.limit + " bytes");
+            }
+        }
+    }
+}
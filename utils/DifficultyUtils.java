@@ -0,0 +1,151 @@
+package p2pblockchain.utils;
+
+import java.math.BigInteger;
+
+/**
+ * Utility class for proof-of-work targets.
+ *
+ * A target is a 256-bit unsigned number; a block hash is valid when, read as
+ * a big-endian number, it is lower than or equal to the target. Targets are
+ * stored in blocks in the 32-bit "compact" form: the high byte is a base-256
+ * exponent and the low 3 bytes are the mantissa, i.e.
+ * target = mantissa * 256^(exponent - 3).
+ */
+public class DifficultyUtils {
+    public static final int TARGET_SIZE = 32;
+
+    /**
+     * Expand a compact target into its 32-byte big-endian form.
+     *
+     * @param compactBits compact target representation
+     * @return 32-byte target (all zeros for invalid/negative encodings)
+     */
+    public static byte[] compactToTarget(int compactBits) {
+        byte[] target = new byte[TARGET_SIZE];
+        int exponent = (compactBits >>> 24) & 0xff;
+        int mantissa = compactBits & 0x007fffff;
+        if ((compactBits & 0x00800000) != 0 || mantissa == 0) {
+            return target;
+        }
+
+        // Mantissa bytes land at index (TARGET_SIZE - exponent) .. + 2
+        for (int i = 0; i < 3; i++) {
+            int index = TARGET_SIZE - exponent + i;
+            byte value = (byte) (mantissa >>> (16 - 8 * i));
+            if (index < 0) {
+                if (value != 0) {
+                    // Overflows 256 bits: treat as the largest possible target
+                    java.util.Arrays.fill(target, (byte) 0xff);
+                    return target;
+                }
+            } else if (index < TARGET_SIZE) {
+                target[index] = value;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Compress a target into its compact form. Precision beyond the 3
+     * mantissa bytes is truncated, so the result never describes a larger
+     * target than the input.
+     *
+     * @param target non-negative target value
+     * @return compact target representation
+     */
+    public static int targetToCompact(BigInteger target) {
+        if (target.signum() <= 0) {
+            return 0;
+        }
+        int exponent = (target.bitLength() + 7) / 8;
+        int mantissa;
+        if (exponent <= 3) {
+            mantissa = target.intValue() << (8 * (3 - exponent));
+        } else {
+            mantissa = target.shiftRight(8 * (exponent - 3)).intValue();
+        }
+        // Keep the sign bit of the mantissa clear
+        if ((mantissa & 0x00800000) != 0) {
+            mantissa >>>= 8;
+            exponent++;
+        }
+        return (exponent << 24) | (mantissa & 0x007fffff);
+    }
+
+    /**
+     * Convert a compact target to a BigInteger.
+     *
+     * @param compactBits compact target representation
+     * @return target value
+     */
+    public static BigInteger compactToBigInteger(int compactBits) {
+        return new BigInteger(1, compactToTarget(compactBits));
+    }
+
+    /**
+     * Check a raw digest against a target, comparing the bytes as unsigned
+     * big-endian numbers. No hex conversion or allocation is involved.
+     *
+     * @param hash   raw digest bytes
+     * @param target 32-byte target from {@link #compactToTarget(int)}
+     * @return true if hash &lt;= target
+     */
+    public static boolean meetsTarget(byte[] hash, byte[] target) {
+        if (hash.length < TARGET_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < TARGET_SIZE; i++) {
+            int h = hash[i] & 0xff;
+            int t = target[i] & 0xff;
+            if (h != t) {
+                return h < t;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scale a target proportionally to the observed timespan of the last
+     * adjustment window. The adjustment is clamped to a factor of
+     * {@code maxFactor} in each direction and never exceeds {@code limitBits}.
+     *
+     * @param compactBits      current compact target
+     * @param actualTimespan   observed time taken by the window
+     * @param expectedTimespan time the window should have taken (same unit)
+     * @param maxFactor        maximum change per adjustment
+     * @param limitBits        compact form of the easiest allowed target
+     * @return new compact target
+     */
+    public static int retarget(int compactBits, long actualTimespan, long expectedTimespan, int maxFactor, int limitBits) {
+        long clamped = Math.max(expectedTimespan / maxFactor, Math.min(actualTimespan, expectedTimespan * maxFactor));
+        clamped = Math.max(1, clamped);
+
+        BigInteger newTarget = compactToBigInteger(compactBits)
+            .multiply(BigInteger.valueOf(clamped))
+            .divide(BigInteger.valueOf(Math.max(1, expectedTimespan)));
+
+        BigInteger limit = compactToBigInteger(limitBits);
+        if (newTarget.compareTo(limit) > 0) {
+            newTarget = limit;
+        }
+        return targetToCompact(newTarget);
+    }
+
+    /**
+     * Relative difficulty of a target compared to the easiest allowed one
+     * (1.0 at the limit). Only used for display.
+     *
+     * @param compactBits compact target
+     * @param limitBits   compact form of the easiest allowed target
+     * @return difficulty as a floating point ratio
+     */
+    public static double difficulty(int compactBits, int limitBits) {
+        BigInteger target = compactToBigInteger(compactBits);
+        if (target.signum() == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return new java.math.BigDecimal(compactToBigInteger(limitBits))
+            .divide(new java.math.BigDecimal(target), java.math.MathContext.DECIMAL64)
+            .doubleValue();
+    }
+}
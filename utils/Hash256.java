@@ -0,0 +1,198 @@
+package p2pblockchain.utils;
+
+/**
+ * Immutable 32-byte hash value (block hashes, Merkle nodes, transaction ids).
+ *
+ * The digest is held as four longs instead of a 64-char hex String, so it
+ * takes a fraction of the heap and {@link #equals(Object)} is four long
+ * comparisons. {@link #hashCode()} is taken from the first 8 bytes, which
+ * are uniformly distributed for a cryptographic digest. Hex is only produced
+ * at the display and JSON edges, by {@link #toHex()} / {@link #toString()}.
+ */
+public final class Hash256 {
+    public static final int SIZE = 32;
+
+    /** All-zero hash, used as the previous hash of the genesis block. */
+    public static final Hash256 ZERO = new Hash256(0L, 0L, 0L, 0L);
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    private Hash256(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * Wrap a raw digest.
+     *
+     * @param digest {@link #SIZE} bytes
+     * @return hash value
+     */
+    public static Hash256 of(byte[] digest) {
+        if (digest.length != SIZE) {
+            throw new IllegalArgumentException("Hash must be " + SIZE + " bytes, got " + digest.length);
+        }
+        return of(digest, 0);
+    }
+
+    /**
+     * Read a raw digest from a larger buffer.
+     *
+     * @param buffer source bytes
+     * @param offset position of the first of {@link #SIZE} bytes
+     * @return hash value
+     */
+    public static Hash256 of(byte[] buffer, int offset) {
+        return new Hash256(
+            readLong(buffer, offset),
+            readLong(buffer, offset + 8),
+            readLong(buffer, offset + 16),
+            readLong(buffer, offset + 24)
+        );
+    }
+
+    /**
+     * Parse a 64-character hex hash (either case).
+     *
+     * @param hex hex-encoded hash
+     * @return hash value
+     * @throws IllegalArgumentException if the string is not a 32-byte hex hash
+     */
+    public static Hash256 fromHex(String hex) {
+        if (hex == null || hex.length() != 2 * SIZE) {
+            throw new IllegalArgumentException("Invalid hash: " + hex);
+        }
+        long[] words = new long[4];
+        for (int i = 0; i < 2 * SIZE; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid hash: " + hex);
+            }
+            words[i / 16] = (words[i / 16] << 4) | digit;
+        }
+        return new Hash256(words[0], words[1], words[2], words[3]);
+    }
+
+    /**
+     * Parse a hash as stored by older serializers: empty, null and the
+     * genesis placeholder "0" stand for {@link #ZERO}, anything else must be
+     * a full hex hash.
+     *
+     * @param hex hex-encoded hash or placeholder
+     * @return hash value
+     * @throws IllegalArgumentException if the string is not a valid hash
+     */
+    public static Hash256 parse(String hex) {
+        if (hex == null || hex.isEmpty() || hex.equals("0")) {
+            return ZERO;
+        }
+        return fromHex(hex);
+    }
+
+    /**
+     * Copy the raw digest into a buffer.
+     *
+     * @param buffer destination
+     * @param offset position of the first of {@link #SIZE} bytes
+     */
+    public void writeTo(byte[] buffer, int offset) {
+        writeLong(buffer, offset, this.w0);
+        writeLong(buffer, offset + 8, this.w1);
+        writeLong(buffer, offset + 16, this.w2);
+        writeLong(buffer, offset + 24, this.w3);
+    }
+
+    /**
+     * Write the lowercase hex form as ASCII bytes, without building a String.
+     *
+     * @param buffer destination
+     * @param offset position of the first of 2 * {@link #SIZE} bytes
+     */
+    public void writeHexTo(byte[] buffer, int offset) {
+        long[] words = {this.w0, this.w1, this.w2, this.w3};
+        for (long word : words) {
+            for (int shift = 60; shift >= 0; shift -= 4) {
+                buffer[offset++] = HEX_DIGITS[(int) (word >>> shift) & 0xf];
+            }
+        }
+    }
+
+    /**
+     * Write the lowercase hex form of a raw digest held in a buffer, as
+     * ASCII bytes.
+     *
+     * @param digest source bytes
+     * @param digestOffset position of the first of {@link #SIZE} digest bytes
+     * @param buffer destination
+     * @param offset position of the first of 2 * {@link #SIZE} bytes
+     */
+    public static void writeHex(byte[] digest, int digestOffset, byte[] buffer, int offset) {
+        for (int i = 0; i < SIZE; i++) {
+            int b = digest[digestOffset + i] & 0xff;
+            buffer[offset++] = HEX_DIGITS[b >>> 4];
+            buffer[offset++] = HEX_DIGITS[b & 0xf];
+        }
+    }
+
+    /**
+     * @return a copy of the raw digest
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[SIZE];
+        writeTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * @return lowercase hex form, as produced by {@link Converter#bytesToHex}
+     */
+    public String toHex() {
+        byte[] hex = new byte[2 * SIZE];
+        writeHexTo(hex, 0);
+        return new String(hex, java.nio.charset.StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Hash256)) {
+            return false;
+        }
+        Hash256 that = (Hash256) other;
+        return this.w0 == that.w0 && this.w1 == that.w1 && this.w2 == that.w2 && this.w3 == that.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.w0 ^ (this.w0 >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    private static long readLong(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] buffer, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            buffer[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -1,12 +1,26 @@
 package p2pblockchain.utils;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Utility class for hashing data using the project's configured hash algorithm.
+ *
+ * Hashing goes through a per-thread {@link Sha3Digest}, which implements
+ * {@code SecurityConfig.HASH_ALGORITHM} (SHA3-256) without allocating a
+ * MessageDigest per call.
  */
 public class HashUtils {
+    private static final ThreadLocal<Sha3Digest> SHA3 = ThreadLocal.withInitial(Sha3Digest::new);
+
+    /**
+     * Get the calling thread's reusable SHA3-256 engine.
+     *
+     * @return per-thread Sha3Digest (must not be shared with other threads)
+     */
+    public static Sha3Digest sha3() {
+        return SHA3.get();
+    }
+
     /**
      * Compute hash of the given bytes and return a hex string.
      *
@@ -14,26 +28,49 @@ public class HashUtils {
      * @return hex-encoded digest
      */
     public static String hashBytes(byte[] data) {
-        try {
-            // Use SHA3-256 as the project's hashing algorithm for stronger security.
-            MessageDigest digest = MessageDigest.getInstance(p2pblockchain.config.SecurityConfig.HASH_ALGORITHM);
-            byte[] hashedBytes = digest.digest(data);
-            return p2pblockchain.utils.Converter.bytesToHex(hashedBytes);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            p2pblockchain.utils.Logger.error("Something went wrong when hashing data.");
-            return "";
-        }
+        return p2pblockchain.utils.Converter.bytesToHex(SHA3.get().digest(data));
+    }
+
+    /**
+     * Compute the raw digest of the given bytes.
+     *
+     * @param data input bytes
+     * @return raw digest bytes
+     */
+    public static byte[] digestBytes(byte[] data) {
+        return SHA3.get().digest(data);
+    }
+
+    /**
+     * Compute the hash of the given bytes as a {@link Hash256}, without
+     * going through hex.
+     *
+     * @param data input bytes
+     * @return digest value
+     */
+    public static Hash256 hash256(byte[] data) {
+        return Hash256.of(SHA3.get().digest(data));
+    }
+
+    /**
+     * Compute the hash of the given string (UTF-8 encoded)
+     * as a {@link Hash256}. Same digest as {@link #hashString(String)}.
+     *
+     * @param data input string
+     * @return digest value
+     */
+    public static Hash256 hash256(String data) {
+        return hash256(data.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
-     * Compute hash of the given string (using platform default charset).
+     * Compute hash of the given string (UTF-8 encoded).
      *
      * @param data input string
      * @return hex-encoded hash digest
      */
     public static String hashString(String data) {
-        return hashBytes(data.getBytes());
+        return hashBytes(data.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -56,6 +93,6 @@ public class HashUtils {
      * @return true if the data's hash matches the expected hash, false otherwise
      */
     public static boolean validateHash(String hash, String data) {
-        return validateHash(hash, data.getBytes());
+        return validateHash(hash, data.getBytes(StandardCharsets.UTF_8));
     }
 }
\ No newline at end of file
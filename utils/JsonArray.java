@@ -23,6 +23,11 @@ public class JsonArray {
      */
     void addRaw(Object v) { list.add(v); }
 
+    /**
+     * Internal: elements in order, for the streaming writer.
+     */
+    Iterable<Object> values() { return list; }
+
     public int size() { return list.size(); }
 
     public JsonObject getJsonObject(int index) { return (JsonObject) list.get(index); }
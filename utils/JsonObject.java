@@ -54,6 +54,11 @@ public class JsonObject {
         return Double.parseDouble(v.toString());
     }
 
+    /**
+     * Internal: members in insertion order, for the streaming writer.
+     */
+    Iterable<Map.Entry<String, Object>> entries() { return map.entrySet(); }
+
     public JsonArray getJsonArray(String key) { return (JsonArray) map.get(key); }
     public JsonObject getJsonObject(String key) { return (JsonObject) map.get(key); }
     /**
@@ -0,0 +1,416 @@
+package p2pblockchain.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Pull-style streaming JSON reader.
+ *
+ * Reads a document token by token from a {@link Reader}, so large documents
+ * (e.g. a whole chain) can be consumed without holding their text in
+ * memory. Sub-trees that are small enough to materialize (e.g. one block)
+ * can be read in one go with {@link #nextObject()}, which yields the same
+ * values as {@link JsonObject#JsonObject(String)}. Primitive values read
+ * with {@link #nextLong()}, {@link #nextInt()} and {@link #nextDouble()}
+ * are parsed straight from the characters, without boxing, so schema-specific
+ * decoders can fill their fields with no intermediate map.
+ *
+ * Usage:
+ * <pre>
+ *   reader.beginObject();
+ *   while (reader.hasNext()) {
+ *       if (reader.nextName().equals("chain")) {
+ *           reader.beginArray();
+ *           while (reader.hasNext()) handle(reader.nextObject());
+ *           reader.endArray();
+ *       } else {
+ *           reader.skipValue();
+ *       }
+ *   }
+ *   reader.endObject();
+ * </pre>
+ *
+ * Malformed input raises an IOException.
+ */
+public class JsonReader {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    // True when the next value in the current object/array needs a ',' first
+    private boolean expectComma = false;
+
+    // Characters of the number being parsed
+    private char[] number = new char[32];
+
+    public JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    public JsonReader(String json) {
+        this(new StringReader(json));
+    }
+
+    public void beginObject() throws IOException {
+        beforeValue();
+        expect('{');
+        this.expectComma = false;
+    }
+
+    public void endObject() throws IOException {
+        expect('}');
+        this.expectComma = true;
+    }
+
+    public void beginArray() throws IOException {
+        beforeValue();
+        expect('[');
+        this.expectComma = false;
+    }
+
+    public void endArray() throws IOException {
+        expect(']');
+        this.expectComma = true;
+    }
+
+    /**
+     * Check whether the current object or array has another element.
+     */
+    public boolean hasNext() throws IOException {
+        int c = peekToken();
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    /**
+     * Read the name of the next object member (the value follows).
+     */
+    public String nextName() throws IOException {
+        beforeValue();
+        String name = readString();
+        expect(':');
+        this.expectComma = false;
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        beforeValue();
+        if (peekToken() == 'n') {
+            readLiteral("null");
+            this.expectComma = true;
+            return null;
+        }
+        String value = readString();
+        this.expectComma = true;
+        return value;
+    }
+
+    /**
+     * Read an integer number. Fractions, exponents and non-numbers are
+     * rejected.
+     */
+    public long nextLong() throws IOException {
+        beforeValue();
+        peekToken();
+        int length = readNumberChars();
+        int i = 0;
+        boolean negative = length > 0 && this.number[0] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == length) {
+            throw new IOException("Expected an integer");
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = this.number[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Expected an integer but found " + new String(this.number, 0, length));
+            }
+            // Accumulate negatively so Long.MIN_VALUE fits
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new IOException("Integer out of range: " + new String(this.number, 0, length));
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new IOException("Integer out of range: " + new String(this.number, 0, length));
+        }
+        this.expectComma = true;
+        return negative ? value : -value;
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Integer out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    public double nextDouble() throws IOException {
+        beforeValue();
+        peekToken();
+        int length = readNumberChars();
+        String text = new String(this.number, 0, length);
+        try {
+            double value = Double.parseDouble(text);
+            this.expectComma = true;
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IOException("Expected a number but found " + text);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        Object value = nextValue();
+        if (!(value instanceof Boolean)) {
+            throw new IOException("Expected a boolean but found " + value);
+        }
+        return (Boolean) value;
+    }
+
+    /**
+     * Read the next value as a fully materialized object.
+     */
+    public JsonObject nextObject() throws IOException {
+        Object value = nextValue();
+        if (!(value instanceof JsonObject)) {
+            throw new IOException("Expected an object");
+        }
+        return (JsonObject) value;
+    }
+
+    /**
+     * Read and discard the next value, whatever its type.
+     */
+    public void skipValue() throws IOException {
+        nextValue();
+    }
+
+    /**
+     * Read the next value: a JsonObject, JsonArray, String, Boolean, null,
+     * or an Integer, Long or Double (same number types as the JsonObject
+     * parser).
+     */
+    private Object nextValue() throws IOException {
+        beforeValue();
+        Object value = readValue();
+        this.expectComma = true;
+        return value;
+    }
+
+    private Object readValue() throws IOException {
+        int c = peekToken();
+        switch (c) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': readLiteral("true"); return Boolean.TRUE;
+            case 'f': readLiteral("false"); return Boolean.FALSE;
+            case 'n': readLiteral("null"); return null;
+            default: return readNumber();
+        }
+    }
+
+    private JsonObject readObject() throws IOException {
+        expect('{');
+        JsonObject object = new JsonObject();
+        if (peekToken() == '}') {
+            this.position++;
+            return object;
+        }
+        while (true) {
+            String key = readString();
+            expect(':');
+            object.put(key, readValue());
+            int c = readToken();
+            if (c == '}') {
+                return object;
+            }
+            if (c != ',') {
+                throw new IOException("Expected ',' or '}' in object");
+            }
+        }
+    }
+
+    private JsonArray readArray() throws IOException {
+        expect('[');
+        JsonArray array = new JsonArray();
+        if (peekToken() == ']') {
+            this.position++;
+            return array;
+        }
+        while (true) {
+            array.addRaw(readValue());
+            int c = readToken();
+            if (c == ']') {
+                return array;
+            }
+            if (c != ',') {
+                throw new IOException("Expected ',' or ']' in array");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            }
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append((char) c);
+                continue;
+            }
+            int escaped = read();
+            switch (escaped) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw new IOException("Invalid unicode escape");
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    sb.append((char) code);
+                    break;
+                case -1:
+                    throw new IOException("Unterminated string");
+                default:
+                    sb.append((char) escaped);
+            }
+        }
+    }
+
+    private Number readNumber() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean isFloat = false;
+        while (true) {
+            int c = peek();
+            if (c >= '0' && c <= '9' || c == '-' || c == '+') {
+                sb.append((char) c);
+            } else if (c == '.' || c == 'e' || c == 'E') {
+                isFloat = true;
+                sb.append((char) c);
+            } else {
+                break;
+            }
+            this.position++;
+        }
+        String number = sb.toString();
+        try {
+            if (isFloat) {
+                return Double.parseDouble(number);
+            }
+            long value = Long.parseLong(number);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number: " + number);
+        }
+    }
+
+    /**
+     * Copy the characters of a number token into {@link #number}.
+     *
+     * @return number of characters
+     */
+    private int readNumberChars() throws IOException {
+        int length = 0;
+        while (true) {
+            int c = peek();
+            if (!(c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+                return length;
+            }
+            if (length == this.number.length) {
+                this.number = java.util.Arrays.copyOf(this.number, 2 * length);
+            }
+            this.number[length++] = (char) c;
+            this.position++;
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw new IOException("Invalid literal, expected " + literal);
+            }
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        if (this.expectComma) {
+            expect(',');
+            this.expectComma = false;
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = readToken();
+        if (c != expected) {
+            throw new IOException("Expected '" + expected + "' but found " + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+        }
+    }
+
+    /**
+     * Next non-whitespace character, consumed.
+     */
+    private int readToken() throws IOException {
+        int c = peekToken();
+        if (c != -1) {
+            this.position++;
+        }
+        return c;
+    }
+
+    /**
+     * Next non-whitespace character, not consumed.
+     */
+    private int peekToken() throws IOException {
+        int c = peek();
+        while (c != -1 && Character.isWhitespace(c)) {
+            this.position++;
+            c = peek();
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            this.position++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (this.position == this.limit) {
+            this.limit = this.in.read(this.buffer, 0, this.buffer.length);
+            this.position = 0;
+            if (this.limit <= 0) {
+                this.limit = 0;
+                return -1;
+            }
+        }
+        return this.buffer[this.position];
+    }
+}
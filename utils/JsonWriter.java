@@ -0,0 +1,240 @@
+package p2pblockchain.utils;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Streaming JSON writer.
+ *
+ * Writes a document token by token to a {@link Writer} (or any Appendable,
+ * such as a StringBuilder) instead of building a JsonObject tree, so large
+ * documents (e.g. a whole chain) never exist as a single String and small
+ * ones are written without boxing. Output is byte-for-byte identical to
+ * {@link JsonObject#toString()} for the same content: no whitespace, same
+ * escaping and number formatting.
+ *
+ * Usage:
+ * <pre>
+ *   writer.beginObject();
+ *   writer.name("chain").beginArray();
+ *   for (Block block : chain) writer.value(block.toJson());
+ *   writer.endArray();
+ *   writer.endObject();
+ *   writer.flush();
+ * </pre>
+ */
+public class JsonWriter {
+    /**
+     * Something that writes itself as one JSON value.
+     */
+    public interface Writable {
+        void writeJson(JsonWriter writer) throws IOException;
+    }
+
+    private final Appendable out;
+    // One entry per open object/array: true until its first element is written
+    private boolean[] firstInScope = new boolean[8];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Write a value to a String.
+     *
+     * @param value value to write
+     * @return its JSON text
+     */
+    public static String toString(Writable value) {
+        StringBuilder sb = new StringBuilder(256);
+        try {
+            value.writeJson(new JsonWriter(sb));
+        } catch (IOException e) {
+            // Not thrown by a StringBuilder
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        this.out.append('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        this.depth--;
+        this.out.append('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        this.out.append('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        this.depth--;
+        this.out.append(']');
+        return this;
+    }
+
+    /**
+     * Write the name of the next object member.
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        this.out.append(':');
+        this.afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            this.out.append("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        this.out.append(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        this.out.append(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        this.out.append(Boolean.toString(value));
+        return this;
+    }
+
+    /**
+     * Write an already built object, streaming its members.
+     */
+    public JsonWriter value(JsonObject value) throws IOException {
+        beginObject();
+        for (Map.Entry<String, Object> entry : value.entries()) {
+            name(entry.getKey());
+            writeAny(entry.getValue());
+        }
+        return endObject();
+    }
+
+    /**
+     * Write an already built array, streaming its elements.
+     */
+    public JsonWriter value(JsonArray value) throws IOException {
+        beginArray();
+        for (Object element : value.values()) {
+            writeAny(element);
+        }
+        return endArray();
+    }
+
+    public void flush() throws IOException {
+        if (this.out instanceof Flushable) {
+            ((Flushable) this.out).flush();
+        }
+    }
+
+    private void writeAny(Object value) throws IOException {
+        if (value == null) {
+            value((String) null);
+        } else if (value instanceof String) {
+            value((String) value);
+        } else if (value instanceof JsonObject) {
+            value((JsonObject) value);
+        } else if (value instanceof JsonArray) {
+            value((JsonArray) value);
+        } else if (value instanceof Boolean || value instanceof Number) {
+            // Same formatting as JsonObject.toString()
+            beforeValue();
+            this.out.append(value.toString());
+        } else {
+            value(value.toString());
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        if (this.afterName) {
+            this.afterName = false;
+        } else {
+            separate();
+        }
+    }
+
+    private void separate() throws IOException {
+        if (this.depth > 0) {
+            if (this.firstInScope[this.depth - 1]) {
+                this.firstInScope[this.depth - 1] = false;
+            } else {
+                this.out.append(',');
+            }
+        }
+    }
+
+    private void push() {
+        if (this.depth == this.firstInScope.length) {
+            this.firstInScope = Arrays.copyOf(this.firstInScope, 2 * this.depth);
+        }
+        this.firstInScope[this.depth++] = true;
+    }
+
+    private void writeString(String value) throws IOException {
+        this.out.append('"');
+        if (!needsEscape(value)) {
+            // Common case (hashes, Base64 keys and signatures)
+            this.out.append(value);
+            this.out.append('"');
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': this.out.append("\\\""); break;
+                case '\\': this.out.append("\\\\"); break;
+                case '\b': this.out.append("\\b"); break;
+                case '\f': this.out.append("\\f"); break;
+                case '\n': this.out.append("\\n"); break;
+                case '\r': this.out.append("\\r"); break;
+                case '\t': this.out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        this.out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        this.out.append(c);
+                    }
+            }
+        }
+        this.out.append('"');
+    }
+
+    private static boolean needsEscape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package p2pblockchain.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets.
+ *
+ * Bucket 0 counts samples under 1 us and bucket i (i &gt; 0) samples in
+ * [2^(i-1), 2^i) us; the last bucket also takes everything slower.
+ * Percentiles are reported as the upper bound of the bucket they fall in,
+ * so they are accurate to a factor of two, which is enough to see which
+ * stage dominates.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record one sample.
+     *
+     * @param nanos measured duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        this.buckets.incrementAndGet(bucket);
+        this.count.incrementAndGet();
+        this.totalNanos.addAndGet(nanos);
+        this.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {return this.count.get();}
+
+    /**
+     * Approximate percentile.
+     *
+     * @param percentile value between 0 and 100
+     * @return upper bound of the bucket holding the percentile, in
+     *         microseconds (0 when empty)
+     */
+    public long percentileMicros(double percentile) {
+        long total = this.count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    /**
+     * Snapshot of the histogram.
+     *
+     * @return JSON object with count, mean, p50/p90/p99 and max (microseconds)
+     */
+    public JsonObject toJson() {
+        long samples = this.count.get();
+        JsonObject json = new JsonObject();
+        json.put("count", samples);
+        json.put("meanMicros", samples == 0 ? 0 : this.totalNanos.get() / samples / 1000);
+        json.put("p50Micros", percentileMicros(50));
+        json.put("p90Micros", percentileMicros(90));
+        json.put("p99Micros", percentileMicros(99));
+        json.put("maxMicros", this.maxNanos.get() / 1000);
+        return json;
+    }
+}
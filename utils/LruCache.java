@@ -0,0 +1,118 @@
+package p2pblockchain.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe least-recently-used cache with hit/miss counters.
+ *
+ * Backed by an access-ordered {@link LinkedHashMap} behind a single lock:
+ * the cached values are expensive to compute (e.g. decoded public keys), so
+ * the lookup itself is never the bottleneck. Counters are updated outside
+ * the lock.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity maximum number of entries (at least 1)
+     */
+    public LruCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.capacity) {
+                    LruCache.this.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Look up a value and mark it as recently used.
+     *
+     * @param key cache key
+     * @return cached value, or null if absent
+     */
+    public V get(K key) {
+        V value;
+        synchronized (this.entries) {
+            value = this.entries.get(key);
+        }
+        if (value == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Check for a key without counting a hit or miss or changing its
+     * recency.
+     */
+    public boolean contains(K key) {
+        synchronized (this.entries) {
+            return this.entries.containsKey(key);
+        }
+    }
+
+    /**
+     * Add or replace a value, evicting the least recently used entry if the
+     * cache is full.
+     *
+     * @param key cache key
+     * @param value value to cache (not null)
+     */
+    public void put(K key, V value) {
+        synchronized (this.entries) {
+            this.entries.put(key, value);
+        }
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public int getCapacity() {return this.capacity;}
+    public long getHits() {return this.hits.sum();}
+    public long getMisses() {return this.misses.sum();}
+    public long getEvictions() {return this.evictions.sum();}
+
+    /**
+     * Snapshot of the cache counters.
+     *
+     * @return JSON object with size, capacity, hits, misses, evictions and hit rate
+     */
+    public JsonObject toJson() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        JsonObject json = new JsonObject();
+        json.put("size", size());
+        json.put("capacity", this.capacity);
+        json.put("hits", hits);
+        json.put("misses", getMisses());
+        json.put("evictions", getEvictions());
+        json.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return json;
+    }
+}
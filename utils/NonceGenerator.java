@@ -1,46 +1,88 @@
 package p2pblockchain.utils;
 
-import java.security.SecureRandom;
-
 /**
- * Utility class for generating nonces.
+ * Allocates disjoint nonce ranges to mining workers.
+ *
+ * The search space of a mining job is the (timestamp, nonce) pair of the
+ * block header. Workers claim sequential ranges of {@code rangeSize} nonces
+ * from a shared generator and iterate them locally, so no random number
+ * generator or shared counter is touched on the hot path.
+ *
+ * Each range is tied to a timestamp. When the clock has moved on, the next
+ * range starts a fresh 32-bit nonce space at the new timestamp. When the
+ * whole nonce space of the current timestamp has been handed out, the
+ * timestamp is rolled forward by one millisecond (acting as an extra nonce).
+ * A (timestamp, nonce) pair is therefore never handed out twice by the same
+ * generator.
+ *
+ * One generator should be created per mining job; it is thread-safe.
  */
 public class NonceGenerator {
-    final private static int nonce_mode = 1;
-    private static SecureRandom secureRandom = new SecureRandom();
-    private static int counter = 0;
-    
+    public static final int DEFAULT_RANGE_SIZE = 1 << 16;
+    private static final long NONCE_SPACE = 1L << 32;
+
+    private final long rangeSize;
+    private final long rangesPerTimestamp;
+    private long currentTimestamp = Long.MIN_VALUE;
+    private long nextRange = 0;
+
     /**
-     * Get a nonce based on the configured mode.
-     *
-     * @return generated nonce as an integer
+     * A contiguous range of nonces to try with a fixed timestamp.
      */
-    public static int getNonce() {
-        switch (nonce_mode) {
-        case 0:
-            return additionMode();
-        case 1:
-            return randomMode();
-        default:
-            return additionMode();
+    public static final class NonceRange {
+        private final long timestamp;
+        private final int firstNonce;
+        private final int size;
+
+        private NonceRange(long timestamp, int firstNonce, int size) {
+            this.timestamp = timestamp;
+            this.firstNonce = firstNonce;
+            this.size = size;
         }
+
+        public long getTimestamp() {return timestamp;}
+        public int getFirstNonce() {return firstNonce;}
+        public int getSize() {return size;}
+    }
+
+    /**
+     * Create a generator handing out ranges of {@link #DEFAULT_RANGE_SIZE}.
+     */
+    public NonceGenerator() {
+        this(DEFAULT_RANGE_SIZE);
     }
-    
+
     /**
-     * Generate a nonce using an incrementing counter.
+     * Create a generator handing out ranges of the given size.
      *
-     * @return incremented nonce
+     * @param rangeSize nonces per range; a power of two between 1 and 2^30
      */
-    private static int additionMode() {
-        return counter++;
+    public NonceGenerator(int rangeSize) {
+        if (rangeSize <= 0 || Integer.bitCount(rangeSize) != 1) {
+            throw new IllegalArgumentException("Nonce range size must be a positive power of two: " + rangeSize);
+        }
+        this.rangeSize = rangeSize;
+        this.rangesPerTimestamp = NONCE_SPACE / rangeSize;
     }
-    
+
     /**
-     * Generate a nonce using a secure random number generator.
+     * Claim the next unused range. Nonces cover the full 32-bit space, so
+     * they may be negative when seen as a Java int.
      *
-     * @return random nonce
+     * @return a range no other caller of this generator will receive
      */
-    private static int randomMode() {
-        return secureRandom.nextInt(0, Integer.MAX_VALUE);
+    public synchronized NonceRange nextRange() {
+        long now = TimeUtils.getNowAsLong();
+        if (now > this.currentTimestamp) {
+            this.currentTimestamp = now;
+            this.nextRange = 0;
+        } else if (this.nextRange == this.rangesPerTimestamp) {
+            // Nonce space exhausted for this timestamp: roll it forward
+            this.currentTimestamp++;
+            this.nextRange = 0;
+        }
+        int firstNonce = (int) (this.nextRange * this.rangeSize);
+        this.nextRange++;
+        return new NonceRange(this.currentTimestamp, firstNonce, (int) this.rangeSize);
     }
-}
\ No newline at end of file
+}
@@ -1,21 +1,79 @@
 package p2pblockchain.utils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
+import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.spec.X509EncodedKeySpec;
 
+/**
+ * Utility class for signatures and public keys.
+ *
+ * Signing and verification go through a per-thread {@link Signature} and
+ * public keys are decoded with a per-thread {@link KeyFactory}, so the
+ * provider lookup and object construction of {@code getInstance} are paid
+ * once per thread instead of once per operation. The batch methods also
+ * skip re-initializing the Signature while consecutive items share a key.
+ */
 public class SecurityUtils {
+    private static final ThreadLocal<Signature> SIGNATURES = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance(p2pblockchain.config.SecurityConfig.SIGNATURE_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Signature algorithm unavailable: " + e.getMessage(), e);
+        }
+    });
+    private static final ThreadLocal<KeyFactory> KEY_FACTORIES = ThreadLocal.withInitial(() -> {
+        try {
+            return KeyFactory.getInstance(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Key algorithm unavailable: " + e.getMessage(), e);
+        }
+    });
+
+    // Decoded keys of recent senders, shared by the network and validation threads
+    private static final LruCache<String, PublicKey> PUBLIC_KEYS =
+        new LruCache<String, PublicKey>(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_CACHE_SIZE);
+
+    /**
+     * Get the calling thread's reusable Signature engine.
+     *
+     * @return per-thread Signature (must not be shared with other threads)
+     */
+    public static Signature signature() {
+        return SIGNATURES.get();
+    }
+
+    /**
+     * Get the calling thread's reusable KeyFactory.
+     *
+     * @return per-thread KeyFactory (must not be shared with other threads)
+     */
+    public static KeyFactory keyFactory() {
+        return KEY_FACTORIES.get();
+    }
+
     /**
      * Restore a PublicKey object from its Base64-encoded string representation.
+     * Decoded keys are cached, so frequent senders only pay the key parsing
+     * once (threads racing on a new address may each decode it); addresses
+     * that fail to decode are not cached.
      *
      * @param address Base64-encoded public key string
      * @return Restored PublicKey object, or null if restoration fails
      */
     private static PublicKey restorePublicKeyFromAddress(String address) {
+        PublicKey cached = PUBLIC_KEYS.get(address);
+        if (cached != null) {
+            return cached;
+        }
         try {
             byte[] publicKeyBytes = Base64Utils.decode(address);
-            return KeyFactory.getInstance(p2pblockchain.config.SecurityConfig.PUBLIC_KEY_ALGORITHM).generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+            PublicKey publicKey = keyFactory().generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+            PUBLIC_KEYS.put(address, publicKey);
+            return publicKey;
         } catch (Exception e) {
             Logger.error("Cannot restore public key from: " + address);
             e.printStackTrace();
@@ -24,7 +82,17 @@ public class SecurityUtils {
     }
 
     /**
-     * Validate a digital signature for given data using the public key derived from the address.
+     * Counters of the decoded public key cache.
+     *
+     * @return JSON object with size, capacity, hits, misses, evictions and hit rate
+     */
+    public static JsonObject getPublicKeyCacheStats() {
+        return PUBLIC_KEYS.toJson();
+    }
+
+    /**
+     * Validate a digital signature for given string (UTF-8 encoded) using the
+     * public key derived from the address.
      *
      * @param address          Base64-encoded public key string
      * @param data             Original data that was signed
@@ -32,11 +100,23 @@ public class SecurityUtils {
      * @return true if the signature is valid, false otherwise
      */
     public static boolean isSignatureValid(String address, String data, String encodedSignature) {
+        return isSignatureValid(address, data.getBytes(StandardCharsets.UTF_8), encodedSignature);
+    }
+
+    /**
+     * Validate a digital signature for given bytes using the public key derived from the address.
+     *
+     * @param address          Base64-encoded public key string
+     * @param data             Original bytes that were signed
+     * @param encodedSignature Base64-encoded digital signature
+     * @return true if the signature is valid, false otherwise
+     */
+    public static boolean isSignatureValid(String address, byte[] data, String encodedSignature) {
         try {
             PublicKey restoredPublicKey = restorePublicKeyFromAddress(address);
-            Signature signer = Signature.getInstance(p2pblockchain.config.SecurityConfig.SIGNATURE_ALGORITHM);
+            Signature signer = signature();
             signer.initVerify(restoredPublicKey);
-            signer.update(data.getBytes());
+            signer.update(data);
             byte[] signature = Base64Utils.decode(encodedSignature);
             return signer.verify(signature);
         } catch (Exception e) {
@@ -45,4 +125,74 @@ public class SecurityUtils {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Validate a batch of signatures on the calling thread. The Signature is
+     * only re-initialized when the address changes, so items from the same
+     * sender should be adjacent.
+     *
+     * @param addresses         Base64-encoded public key of each item
+     * @param data              Original bytes of each item
+     * @param encodedSignatures Base64-encoded signature of each item
+     * @return validity of each item
+     */
+    public static boolean[] areSignaturesValid(String[] addresses, byte[][] data, String[] encodedSignatures) {
+        boolean[] valid = new boolean[addresses.length];
+        Signature signer = signature();
+        String initializedFor = null;
+        for (int i = 0; i < addresses.length; i++) {
+            try {
+                // verify() leaves the Signature initialized for the same key,
+                // so only a new sender needs initVerify
+                if (!addresses[i].equals(initializedFor)) {
+                    signer.initVerify(restorePublicKeyFromAddress(addresses[i]));
+                    initializedFor = addresses[i];
+                }
+                signer.update(data[i]);
+                valid[i] = signer.verify(Base64Utils.decode(encodedSignatures[i]));
+            } catch (Exception e) {
+                // A failed verify() may leave the Signature in any state
+                initializedFor = null;
+                Logger.error("Something went wrong when validating signature " + i + " of a batch");
+                valid[i] = false;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Sign bytes with a private key.
+     *
+     * @param privateKey signing key
+     * @param data       bytes to sign
+     * @return Base64-encoded signature
+     * @throws GeneralSecurityException if the key cannot sign
+     */
+    public static String sign(PrivateKey privateKey, byte[] data) throws GeneralSecurityException {
+        Signature signer = signature();
+        signer.initSign(privateKey);
+        signer.update(data);
+        return Base64Utils.encode(signer.sign());
+    }
+
+    /**
+     * Sign a batch of messages with one private key, initializing the
+     * Signature once for the whole batch.
+     *
+     * @param privateKey signing key
+     * @param data       bytes of each message
+     * @return Base64-encoded signature of each message
+     * @throws GeneralSecurityException if the key cannot sign
+     */
+    public static String[] signAll(PrivateKey privateKey, byte[][] data) throws GeneralSecurityException {
+        String[] signatures = new String[data.length];
+        Signature signer = signature();
+        signer.initSign(privateKey);
+        for (int i = 0; i < data.length; i++) {
+            // sign() resets the Signature for another message with the same key
+            signer.update(data[i]);
+            signatures[i] = Base64Utils.encode(signer.sign());
+        }
+        return signatures;
+    }
+}
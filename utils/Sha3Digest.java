@@ -0,0 +1,208 @@
+package p2pblockchain.utils;
+
+/**
+ * Pure-Java SHA3-256 (Keccak-f[1600]) engine used on the hashing hot paths.
+ *
+ * Produces the same output as {@code MessageDigest.getInstance("SHA3-256")}
+ * but never allocates once constructed: input is XORed straight into the
+ * state lanes and the digest is written into a caller-supplied buffer.
+ *
+ * The absorbed state can be copied with {@link #restore(Sha3Digest)}, which
+ * lets a caller absorb a fixed prefix once (midstate) and then only absorb
+ * the changing suffix for every message, e.g. the timestamp and nonce of a
+ * block header.
+ *
+ * Instances are not thread-safe; use one per thread (see
+ * {@link HashUtils#sha3()}).
+ */
+public class Sha3Digest {
+    public static final int DIGEST_SIZE = 32;
+    // Rate in bytes for a 256-bit output: (1600 - 2 * 256) / 8
+    public static final int RATE = 136;
+
+    private static final int RATE_LANES = RATE / 8;
+    private static final long[] ROUND_CONSTANTS = {
+        0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL, 0x8000000080008000L,
+        0x000000000000808bL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+        0x000000000000008aL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+        0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L, 0x8000000000008003L,
+        0x8000000000008002L, 0x8000000000000080L, 0x000000000000800aL, 0x800000008000000aL,
+        0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+    };
+
+    private final long[] state = new long[25];
+    private int position = 0;
+
+    /**
+     * Create an empty digest.
+     */
+    public Sha3Digest() {
+    }
+
+    /**
+     * Clear the absorbed input.
+     */
+    public void reset() {
+        java.util.Arrays.fill(this.state, 0L);
+        this.position = 0;
+    }
+
+    /**
+     * Copy the absorbed state of another digest into this one, so hashing
+     * can continue from the same point without re-absorbing its input.
+     *
+     * @param midstate digest holding the already absorbed prefix
+     */
+    public void restore(Sha3Digest midstate) {
+        System.arraycopy(midstate.state, 0, this.state, 0, this.state.length);
+        this.position = midstate.position;
+    }
+
+    /**
+     * Absorb input bytes.
+     *
+     * @param input  source buffer
+     * @param offset first byte to absorb
+     * @param length number of bytes to absorb
+     */
+    public void update(byte[] input, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            this.state[this.position >>> 3] ^= (input[i] & 0xffL) << ((this.position & 7) << 3);
+            if (++this.position == RATE) {
+                permute(this.state);
+                this.position = 0;
+            }
+        }
+    }
+
+    /**
+     * Absorb input bytes.
+     *
+     * @param input bytes to absorb
+     */
+    public void update(byte[] input) {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Finish the hash and write the {@link #DIGEST_SIZE}-byte digest into
+     * {@code output}. The digest is reset afterwards.
+     *
+     * @param output buffer receiving the digest
+     * @param offset position of the first digest byte in {@code output}
+     */
+    public void digest(byte[] output, int offset) {
+        // SHA3 domain separation (01) followed by pad10*1
+        this.state[this.position >>> 3] ^= 0x06L << ((this.position & 7) << 3);
+        this.state[RATE_LANES - 1] ^= 0x80L << 56;
+        permute(this.state);
+
+        for (int i = 0; i < DIGEST_SIZE; i++) {
+            output[offset + i] = (byte) (this.state[i >>> 3] >>> ((i & 7) << 3));
+        }
+        reset();
+    }
+
+    /**
+     * Hash a complete message.
+     *
+     * @param input message bytes
+     * @return new {@link #DIGEST_SIZE}-byte array holding the digest
+     */
+    public byte[] digest(byte[] input) {
+        byte[] output = new byte[DIGEST_SIZE];
+        reset();
+        update(input, 0, input.length);
+        digest(output, 0);
+        return output;
+    }
+
+    /**
+     * Keccak-f[1600] permutation, 24 rounds, on 25 little-endian lanes.
+     */
+    private static void permute(long[] a) {
+        long a00 = a[0], a01 = a[1], a02 = a[2], a03 = a[3], a04 = a[4];
+        long a05 = a[5], a06 = a[6], a07 = a[7], a08 = a[8], a09 = a[9];
+        long a10 = a[10], a11 = a[11], a12 = a[12], a13 = a[13], a14 = a[14];
+        long a15 = a[15], a16 = a[16], a17 = a[17], a18 = a[18], a19 = a[19];
+        long a20 = a[20], a21 = a[21], a22 = a[22], a23 = a[23], a24 = a[24];
+
+        for (int round = 0; round < 24; round++) {
+            // Theta
+            long c0 = a00 ^ a05 ^ a10 ^ a15 ^ a20;
+            long c1 = a01 ^ a06 ^ a11 ^ a16 ^ a21;
+            long c2 = a02 ^ a07 ^ a12 ^ a17 ^ a22;
+            long c3 = a03 ^ a08 ^ a13 ^ a18 ^ a23;
+            long c4 = a04 ^ a09 ^ a14 ^ a19 ^ a24;
+            long d0 = c4 ^ Long.rotateLeft(c1, 1);
+            long d1 = c0 ^ Long.rotateLeft(c2, 1);
+            long d2 = c1 ^ Long.rotateLeft(c3, 1);
+            long d3 = c2 ^ Long.rotateLeft(c4, 1);
+            long d4 = c3 ^ Long.rotateLeft(c0, 1);
+
+            // Rho and Pi: b[y][2x+3y] = rot(a[x][y] ^ d[x], r[x][y])
+            long b00 = a00 ^ d0;
+            long b10 = Long.rotateLeft(a01 ^ d1, 1);
+            long b20 = Long.rotateLeft(a02 ^ d2, 62);
+            long b05 = Long.rotateLeft(a03 ^ d3, 28);
+            long b15 = Long.rotateLeft(a04 ^ d4, 27);
+            long b16 = Long.rotateLeft(a05 ^ d0, 36);
+            long b01 = Long.rotateLeft(a06 ^ d1, 44);
+            long b11 = Long.rotateLeft(a07 ^ d2, 6);
+            long b21 = Long.rotateLeft(a08 ^ d3, 55);
+            long b06 = Long.rotateLeft(a09 ^ d4, 20);
+            long b07 = Long.rotateLeft(a10 ^ d0, 3);
+            long b17 = Long.rotateLeft(a11 ^ d1, 10);
+            long b02 = Long.rotateLeft(a12 ^ d2, 43);
+            long b12 = Long.rotateLeft(a13 ^ d3, 25);
+            long b22 = Long.rotateLeft(a14 ^ d4, 39);
+            long b23 = Long.rotateLeft(a15 ^ d0, 41);
+            long b08 = Long.rotateLeft(a16 ^ d1, 45);
+            long b18 = Long.rotateLeft(a17 ^ d2, 15);
+            long b03 = Long.rotateLeft(a18 ^ d3, 21);
+            long b13 = Long.rotateLeft(a19 ^ d4, 8);
+            long b14 = Long.rotateLeft(a20 ^ d0, 18);
+            long b24 = Long.rotateLeft(a21 ^ d1, 2);
+            long b09 = Long.rotateLeft(a22 ^ d2, 61);
+            long b19 = Long.rotateLeft(a23 ^ d3, 56);
+            long b04 = Long.rotateLeft(a24 ^ d4, 14);
+
+            // Chi
+            a00 = b00 ^ (~b01 & b02);
+            a01 = b01 ^ (~b02 & b03);
+            a02 = b02 ^ (~b03 & b04);
+            a03 = b03 ^ (~b04 & b00);
+            a04 = b04 ^ (~b00 & b01);
+            a05 = b05 ^ (~b06 & b07);
+            a06 = b06 ^ (~b07 & b08);
+            a07 = b07 ^ (~b08 & b09);
+            a08 = b08 ^ (~b09 & b05);
+            a09 = b09 ^ (~b05 & b06);
+            a10 = b10 ^ (~b11 & b12);
+            a11 = b11 ^ (~b12 & b13);
+            a12 = b12 ^ (~b13 & b14);
+            a13 = b13 ^ (~b14 & b10);
+            a14 = b14 ^ (~b10 & b11);
+            a15 = b15 ^ (~b16 & b17);
+            a16 = b16 ^ (~b17 & b18);
+            a17 = b17 ^ (~b18 & b19);
+            a18 = b18 ^ (~b19 & b15);
+            a19 = b19 ^ (~b15 & b16);
+            a20 = b20 ^ (~b21 & b22);
+            a21 = b21 ^ (~b22 & b23);
+            a22 = b22 ^ (~b23 & b24);
+            a23 = b23 ^ (~b24 & b20);
+            a24 = b24 ^ (~b20 & b21);
+
+            // Iota
+            a00 ^= ROUND_CONSTANTS[round];
+        }
+
+        a[0] = a00; a[1] = a01; a[2] = a02; a[3] = a03; a[4] = a04;
+        a[5] = a05; a[6] = a06; a[7] = a07; a[8] = a08; a[9] = a09;
+        a[10] = a10; a[11] = a11; a[12] = a12; a[13] = a13; a[14] = a14;
+        a[15] = a15; a[16] = a16; a[17] = a17; a[18] = a18; a[19] = a19;
+        a[20] = a20; a[21] = a21; a[22] = a22; a[23] = a23; a[24] = a24;
+    }
+}